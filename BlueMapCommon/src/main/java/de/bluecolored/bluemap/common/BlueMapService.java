@@ -40,6 +40,7 @@
 import de.bluecolored.bluemap.core.debug.StateDumper;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
+import de.bluecolored.bluemap.core.map.hires.TileModel;
 import de.bluecolored.bluemap.core.resources.datapack.DataPack;
 import de.bluecolored.bluemap.core.resources.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.storage.Storage;
@@ -47,6 +48,7 @@
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.World;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.region.LinearRegion;
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.configurate.ConfigurateException;
@@ -93,7 +95,11 @@ public BlueMapService(BlueMapConfiguration configuration) {
         this.maps = new ConcurrentHashMap<>();
         this.storages = new ConcurrentHashMap<>();
 
+        TileModel.pool().setByteBudget(config.getCoreConfig().getRenderBufferMemoryLimit() * 1024L * 1024L);
+        LinearRegion.setDataCacheMemoryLimit(config.getCoreConfig().getLinearRegionCacheMemoryLimit() * 1024L * 1024L);
+
         StateDumper.global().register(this);
+        StateDumper.global().register(TileModel.pool());
     }
 
     public WebFilesManager getWebFilesManager() {
@@ -225,7 +231,8 @@ private synchronized void loadMap(String id, MapConfig mapConfig) throws Configu
         if (world == null) {
             try {
                 Logger.global.logDebug("Loading world " + worldId + " ...");
-                world = MCAWorld.load(worldFolder, dimension);
+                long chunkCacheMemoryLimit = getConfig().getCoreConfig().getChunkCacheMemoryLimit() * 1024L * 1024L;
+                world = MCAWorld.load(worldFolder, dimension, chunkCacheMemoryLimit);
                 worlds.put(worldId, world);
             } catch (IOException ex) {
                 throw new ConfigurationException(
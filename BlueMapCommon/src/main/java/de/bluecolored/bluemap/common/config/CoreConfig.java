@@ -44,6 +44,12 @@ public class CoreConfig {
 
     private boolean scanForModResources = true;
 
+    private int renderBufferMemoryLimit = 256;
+
+    private int chunkCacheMemoryLimit = 256;
+
+    private int linearRegionCacheMemoryLimit = 128;
+
     private LogConfig log = new LogConfig();
 
     public boolean isAcceptDownload() {
@@ -71,6 +77,27 @@ public boolean isScanForModResources() {
         return scanForModResources;
     }
 
+    /**
+     * The memory limit for the reused hires render-buffers in MiB
+     */
+    public int getRenderBufferMemoryLimit() {
+        return renderBufferMemoryLimit;
+    }
+
+    /**
+     * The memory limit for the chunk-cache of each world in MiB
+     */
+    public int getChunkCacheMemoryLimit() {
+        return chunkCacheMemoryLimit;
+    }
+
+    /**
+     * The memory limit for the decompressed data of linear region-files (shared by all worlds) in MiB
+     */
+    public int getLinearRegionCacheMemoryLimit() {
+        return linearRegionCacheMemoryLimit;
+    }
+
     public LogConfig getLog() {
         return log;
     }
@@ -78,6 +78,10 @@ public class MapConfig implements MapSettings {
 
     private boolean saveHiresLayer = true;
 
+    private boolean mergeHiresFaces = false;
+
+    private boolean binaryLowresTiles = false;
+
     private String storage = "file";
 
     private boolean ignoreMissingLightData = false;
@@ -89,6 +93,8 @@ public class MapConfig implements MapSettings {
     private int lowresTileSize = 500;
     private int lodCount = 3;
     private int lodFactor = 5;
+    private int lowresCompressionLevel = 6;
+    private int lowresCacheMemoryLimit = 64;
 
     public Vector3i getMinPos() {
         if (min == null) min = new Vector3i(minX, minY, minZ);
@@ -27,6 +27,9 @@
 import com.flowpowered.math.vector.Vector2i;
 import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.ArgumentType;
@@ -54,6 +57,7 @@
 import de.bluecolored.bluemap.core.map.MapRenderState;
 import de.bluecolored.bluemap.core.storage.MapStorage;
 import de.bluecolored.bluemap.core.storage.Storage;
+import de.bluecolored.bluemap.core.world.Biome;
 import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.World;
 import de.bluecolored.bluemap.core.world.block.Block;
@@ -132,7 +136,10 @@ public void init() {
 
                 .then(literal("cache")
                         .requires(requirements("bluemap.debug"))
-                        .executes(this::debugClearCacheCommand))
+                        .executes(this::debugCacheCommand)
+
+                        .then(literal("clear")
+                                .executes(this::debugClearCacheCommand)))
 
 
                 .then(literal("dump")
@@ -415,6 +422,47 @@ public int reloadCommand(CommandContext<S> context, boolean light) {
         return 1;
     }
 
+    public int debugCacheCommand(CommandContext<S> context) {
+        CommandSource source = commandSourceInterface.apply(context.getSource());
+
+        List<Text> lines = new ArrayList<>();
+        for (World world : plugin.getBlueMap().getWorlds().values()) {
+            lines.add(Text.of(TextColor.GOLD, world.getId(), ":"));
+
+            for (Map.Entry<String, Cache<?, ?>> entry : world.getCaches().entrySet()) {
+                Cache<?, ?> cache = entry.getValue();
+                CacheStats stats = cache.stats();
+
+                String size = cache.estimatedSize() + " entries";
+                Policy.Eviction<?, ?> eviction = cache.policy().eviction().orElse(null);
+                if (eviction != null && eviction.isWeighted()) {
+                    size += String.format(" (%.1f / %.1f MiB)",
+                            eviction.weightedSize().orElse(0) / 1024d / 1024d,
+                            eviction.getMaximum() / 1024d / 1024d
+                    );
+                }
+
+                lines.add(Text.of(TextColor.GRAY, "  ", entry.getKey(), ": ", TextColor.WHITE, size));
+                lines.add(Text.of(
+                        TextColor.GRAY, "    hit-rate: ", TextColor.WHITE, String.format("%.1f%%", stats.hitRate() * 100),
+                        TextColor.GRAY, " (" + stats.hitCount() + " hits, " + stats.missCount() + " misses)"
+                ));
+                lines.add(Text.of(
+                        TextColor.GRAY, "    evictions: ", TextColor.WHITE, stats.evictionCount(),
+                        TextColor.GRAY, ", avg. load-time: ", TextColor.WHITE, String.format("%.2f ms", stats.averageLoadPenalty() / 1000000d)
+                ));
+            }
+        }
+
+        if (lines.isEmpty()) {
+            source.sendMessage(Text.of(TextColor.GRAY, "There are no worlds loaded."));
+            return 1;
+        }
+
+        source.sendMessages(lines);
+        return 1;
+    }
+
     public int debugClearCacheCommand(CommandContext<S> context) {
         CommandSource source = commandSourceInterface.apply(context.getSource());
 
@@ -523,7 +571,7 @@ private Text formatBlock(Block<?> block) {
         lines.put("chunk-has-lightdata", chunk.hasLightData());
         lines.put("chunk-inhabited-time", chunk.getInhabitedTime());
         lines.put("block-state", block.getBlockState());
-        lines.put("biome", block.getBiomeId());
+        lines.put("biome", Biome.formattedById(block.getBiomeId()));
         lines.put("position", block.getX() + " | " + block.getY() + " | " + block.getZ());
         lines.put("block-light", block.getBlockLightLevel());
         lines.put("sun-light", block.getSunLightLevel());
@@ -36,6 +36,7 @@
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -48,6 +49,11 @@ public class WorldRegionRenderTask implements RenderTask {
 
     private Deque<Vector2i> tiles;
     private int tileCount;
+
+    // chunks of this region that still need to be loaded, and for each tile the number of its chunks in that queue
+    private Deque<Vector2i> preloadChunks;
+    private Map<Vector2i, Integer> tileChunksPending;
+    private Region.Pin regionPin;
     private long startTime;
 
     private volatile int atWork;
@@ -64,6 +70,9 @@ public WorldRegionRenderTask(BmMap map, Vector2i worldRegion, boolean force) {
 
         this.tiles = null;
         this.tileCount = -1;
+        this.preloadChunks = null;
+        this.tileChunksPending = null;
+        this.regionPin = null;
         this.startTime = -1;
 
         this.atWork = 0;
@@ -77,45 +86,75 @@ private synchronized void init() {
         // collect chunks
         long changesSince = force ? 0 : map.getRenderState().getRenderTime(worldRegion);
         Region region = map.getWorld().getRegion(worldRegion.getX(), worldRegion.getY());
-        Collection<Vector2i> chunks = new ArrayList<>(1024);
+
+        // keep the region loaded while its chunks are loaded one by one
+        regionPin = region.pin();
+
         try {
-            region.iterateAllChunks((ChunkConsumer.ListOnly) (x, z, timestamp) -> {
-                if (timestamp >= changesSince) chunks.add(new Vector2i(x, z));
-            });
-        } catch (IOException ex) {
-            Logger.global.logWarning("Failed to read region " + worldRegion + " from world " + map.getWorld().getName() + " (" + ex + ")");
-        }
+            Collection<Vector2i> chunks = new ArrayList<>(1024);
+            try {
+                region.iterateAllChunks((ChunkConsumer.ListOnly) (x, z, timestamp) -> {
+                    if (timestamp >= changesSince) chunks.add(new Vector2i(x, z));
+                });
+            } catch (IOException ex) {
+                Logger.global.logWarning("Failed to read region " + worldRegion + " from world " + map.getWorld().getName() + " (" + ex + ")");
+            }
 
-        Grid tileGrid = map.getHiresModelManager().getTileGrid();
-        Grid chunkGrid = map.getWorld().getChunkGrid();
-        Predicate<Vector2i> boundsTileFilter = map.getMapSettings().getRenderBoundariesCellFilter(tileGrid);
+            Grid tileGrid = map.getHiresModelManager().getTileGrid();
+            Grid chunkGrid = map.getWorld().getChunkGrid();
+            Predicate<Vector2i> boundsTileFilter = map.getMapSettings().getRenderBoundariesCellFilter(tileGrid);
 
-        for (Vector2i chunk : chunks) {
-            Vector2i tileMin = chunkGrid.getCellMin(chunk, tileGrid);
-            Vector2i tileMax = chunkGrid.getCellMax(chunk, tileGrid);
+            for (Vector2i chunk : chunks) {
+                Vector2i tileMin = chunkGrid.getCellMin(chunk, tileGrid);
+                Vector2i tileMax = chunkGrid.getCellMax(chunk, tileGrid);
 
-            for (int x = tileMin.getX(); x <= tileMax.getX(); x++) {
-                for (int z = tileMin.getY(); z <= tileMax.getY(); z++) {
-                    tileSet.add(new Vector2l(x, z));
+                for (int x = tileMin.getX(); x <= tileMax.getX(); x++) {
+                    for (int z = tileMin.getY(); z <= tileMax.getY(); z++) {
+                        tileSet.add(new Vector2l(x, z));
+                    }
                 }
+
+                // make sure chunk gets re-loaded from disk
+                map.getWorld().invalidateChunkCache(chunk.getX(), chunk.getY());
             }
 
-            // make sure chunk gets re-loaded from disk
-            map.getWorld().invalidateChunkCache(chunk.getX(), chunk.getY());
-        }
+            this.tileCount = tileSet.size();
+            this.tiles = tileSet.stream()
+                    .sorted(WorldRegionRenderTask::compareVec2L) //sort with longs to avoid overflow (comparison uses distanceSquared)
+                    .map(Vector2l::toInt) // back to ints
+                    .filter(boundsTileFilter)
+                    .filter(map.getTileFilter())
+                    .collect(Collectors.toCollection(ArrayDeque::new));
+
+            // queue the chunks of this region that the tiles need, in the order of the tiles, so the first tiles
+            // become ready to render first
+            this.preloadChunks = new ArrayDeque<>();
+            this.tileChunksPending = new HashMap<>();
+            Set<Vector2i> queuedChunks = new HashSet<>();
+            Vector2i regionMin = map.getWorld().getRegionGrid().getCellMin(worldRegion, chunkGrid);
+            Vector2i regionMax = map.getWorld().getRegionGrid().getCellMax(worldRegion, chunkGrid);
+            for (Vector2i tile : tiles) {
+                Vector2i chunkMin = tileGrid.getCellMin(tile, chunkGrid).max(regionMin);
+                Vector2i chunkMax = tileGrid.getCellMax(tile, chunkGrid).min(regionMax);
+
+                for (int x = chunkMin.getX(); x <= chunkMax.getX(); x++) {
+                    for (int z = chunkMin.getY(); z <= chunkMax.getY(); z++) {
+                        Vector2i chunk = new Vector2i(x, z);
+                        if (queuedChunks.add(chunk)) preloadChunks.add(chunk);
+                    }
+                }
+            }
+
+            for (Vector2i chunk : preloadChunks) {
+                forEachTileOfChunk(chunk, tile -> tileChunksPending.merge(tile, 1, Integer::sum));
+            }
 
-        this.tileCount = tileSet.size();
-        this.tiles = tileSet.stream()
-                .sorted(WorldRegionRenderTask::compareVec2L) //sort with longs to avoid overflow (comparison uses distanceSquared)
-                .map(Vector2l::toInt) // back to ints
-                .filter(boundsTileFilter)
-                .filter(map.getTileFilter())
-                .collect(Collectors.toCollection(ArrayDeque::new));
-
-        if (tiles.isEmpty()) complete();
-        else {
-            // preload chunks
-            map.getWorld().preloadRegionChunks(worldRegion.getX(), worldRegion.getY());
+            if (tiles.isEmpty()) complete();
+        } catch (RuntimeException ex) {
+            // don't keep the region pinned forever, the task is initialized again with the next call to doWork
+            this.tiles = null;
+            releaseRegion();
+            throw ex;
         }
     }
 
@@ -123,17 +162,45 @@ private synchronized void init() {
     public void doWork() {
         if (cancelled) return;
 
-        Vector2i tile;
+        Vector2i tile, chunk = null;
 
         synchronized (this) {
             if (tiles == null) init();
             if (tiles.isEmpty()) return;
 
-            tile = tiles.pollFirst();
+            tile = pollReadyTile();
+            if (tile == null) {
+                chunk = preloadChunks.pollFirst();
+
+                if (chunk == null) {
+                    // all chunks are already being loaded by other threads, wait for them
+                    try {
+                        this.wait(1000);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return;
+                }
+            }
 
             this.atWork++;
         }
 
+        if (chunk != null) {
+            // load the chunk into the chunk-cache of the world, so the tiles using it are ready to be rendered
+            try {
+                map.getWorld().getChunk(chunk.getX(), chunk.getY());
+            } finally {
+                synchronized (this) {
+                    Vector2i loadedChunk = chunk;
+                    forEachTileOfChunk(loadedChunk, t -> tileChunksPending.computeIfPresent(t, (k, count) -> count > 1 ? count - 1 : null));
+                    this.atWork--;
+                    this.notifyAll();
+                }
+            }
+            return;
+        }
+
         if (tileRenderPreconditions(tile)) {
             map.renderTile(tile); // <- actual work
         }
@@ -147,6 +214,34 @@ public void doWork() {
         }
     }
 
+    /**
+     * Removes and returns the first tile whose chunks are all loaded, or null if there is no such tile
+     */
+    private synchronized Vector2i pollReadyTile() {
+        Iterator<Vector2i> iterator = tiles.iterator();
+        while (iterator.hasNext()) {
+            Vector2i tile = iterator.next();
+            if (!tileChunksPending.containsKey(tile)) {
+                iterator.remove();
+                return tile;
+            }
+        }
+        return null;
+    }
+
+    private void forEachTileOfChunk(Vector2i chunk, Consumer<Vector2i> action) {
+        Grid tileGrid = map.getHiresModelManager().getTileGrid();
+        Grid chunkGrid = map.getWorld().getChunkGrid();
+
+        Vector2i tileMin = chunkGrid.getCellMin(chunk, tileGrid);
+        Vector2i tileMax = chunkGrid.getCellMax(chunk, tileGrid);
+        for (int x = tileMin.getX(); x <= tileMax.getX(); x++) {
+            for (int z = tileMin.getY(); z <= tileMax.getY(); z++) {
+                action.accept(new Vector2i(x, z));
+            }
+        }
+    }
+
     private boolean tileRenderPreconditions(Vector2i tile) {
         Grid tileGrid = map.getHiresModelManager().getTileGrid();
         Grid chunkGrid = map.getWorld().getChunkGrid();
@@ -186,6 +281,13 @@ private boolean tileRenderPreconditions(Vector2i tile) {
 
     private void complete() {
         map.getRenderState().setRenderTime(worldRegion, startTime);
+        releaseRegion();
+    }
+
+    private synchronized void releaseRegion() {
+        if (regionPin == null) return;
+        regionPin.close();
+        regionPin = null;
     }
 
     @Override
@@ -210,6 +312,9 @@ public void cancel() {
 
         synchronized (this) {
             if (tiles != null) this.tiles.clear();
+            if (preloadChunks != null) this.preloadChunks.clear();
+            releaseRegion();
+            this.notifyAll();
         }
     }
 
@@ -73,7 +73,12 @@ public HttpResponse handle(HttpRequest request) {
                 int x = Integer.parseInt(tileMatcher.group(2).replace("/", ""));
                 int z = Integer.parseInt(tileMatcher.group(3).replace("/", ""));
 
-                GridStorage gridStorage = lod == 0 ? mapStorage.hiresTiles() : mapStorage.lowresTiles(lod);
+                boolean png = path.endsWith(".png");
+                GridStorage gridStorage;
+                if (lod == 0) gridStorage = mapStorage.hiresTiles();
+                else if (png) gridStorage = mapStorage.lowresTiles(lod);
+                else gridStorage = mapStorage.lowresBinaryTiles(lod);
+
                 CompressedInputStream in = gridStorage.read(x, z);
                 if (in == null) return new HttpResponse(HttpStatusCode.NO_CONTENT);
 
@@ -81,8 +86,8 @@ public HttpResponse handle(HttpRequest request) {
                 response.addHeader("Cache-Control", "public");
                 response.addHeader("Cache-Control", "max-age=" + TimeUnit.DAYS.toSeconds(1));
 
-                if (lod == 0) response.addHeader("Content-Type", "application/octet-stream");
-                else response.addHeader("Content-Type", "image/png");
+                if (png) response.addHeader("Content-Type", "image/png");
+                else response.addHeader("Content-Type", "application/octet-stream");
 
                 writeToResponse(in, response, request);
                 return response;
@@ -10,6 +10,7 @@ $password = '';
 $database = 'bluemap';
 
 // set this to "none" if you disabled compression on your maps
+// (used for the hires-tiles and the binary lowres-tiles)
 $hiresCompression = 'gzip';
 
 // !!! END - DONT CHANGE ANYTHING AFTER THIS LINE !!!
@@ -34,6 +35,13 @@ function startsWith($haystack, $needle) {
     return substr($haystack, 0, strlen($needle)) === $needle;
 }
 
+function endsWith($haystack, $needle) {
+    return $needle === "" || substr($haystack, -strlen($needle)) === $needle;
+}
+
+// binary lowres-tiles are stored with this offset added to their lod (see SQLMapStorage.java)
+$lowresBinaryLodOffset = 1000;
+
 // mime-types for meta-files
 $mimeDefault = "application/octet-stream";
 $mimeTypes = [
@@ -135,7 +143,11 @@ if (startsWith($path, "/maps/")) {
         $lod = intval($matches[1][0]);
         $tileX = intval(str_replace("/", "", $matches[2][0]));
         $tileZ = intval(str_replace("/", "", $matches[3][0]));
-        $compression = $lod === 0 ? $hiresCompression : "none";
+
+        // hires- and binary lowres-tiles are compressed with the maps compression
+        $binary = $lod === 0 || endsWith($mapPath, ".lrbm");
+        $compression = $binary ? $hiresCompression : "none";
+        if ($lod !== 0 && $binary) $lod += $lowresBinaryLodOffset;
 
         // query for tile
         try {
@@ -166,7 +178,7 @@ if (startsWith($path, "/maps/")) {
 
                 if ($compression !== "none")
                     header("Content-Encoding: $compression");
-                if ($lod === 0) {
+                if ($binary) {
                     header("Content-Type: application/octet-stream");
                 } else {
                     header("Content-Type: image/png");
@@ -23,7 +23,9 @@
  * THE SOFTWARE.
  */
 import {pathFromCoords} from "../util/Utils";
+import {parseBinaryLowresTile} from "./lowres/LowresBinaryTile";
 import {
+    FileLoader,
     TextureLoader,
     Mesh,
     PlaneGeometry,
@@ -51,6 +53,8 @@ export class LowresTileLoader {
         this.uniforms = uniforms;
 
         this.textureLoader = new TextureLoader();
+        this.fileLoader = new FileLoader();
+        this.fileLoader.setResponseType('arraybuffer');
         this.geometry = new PlaneGeometry(
             tileSettings.tileSize.x + 1, tileSettings.tileSize.z + 1,
             Math.ceil(100 / (lod * 2)), Math.ceil(100 / (lod * 2))
@@ -61,13 +65,50 @@ export class LowresTileLoader {
         this.geometry.translate(tileSettings.tileSize.x / 2 + 1, 0, tileSettings.tileSize.x / 2 + 1);
     }
 
+    /**
+     * Loads the texture of a tile, in the binary format if the map uses it (falling back to the PNG if there is no
+     * valid binary tile) or as PNG
+     * @returns {Promise<{texture: Texture, tileUrl: string}>}
+     */
+    loadTexture = (tilePath) => {
+        let pngUrl = tilePath + '.png';
+        let loadPng = () => new Promise((resolve, reject) => {
+            this.textureLoader.load(pngUrl + '?' + this.tileCacheHash,
+                texture => resolve({texture, tileUrl: pngUrl}),
+                undefined,
+                reject
+            );
+        });
+
+        if (this.tileSettings.format !== "binary") return loadPng();
+
+        let binaryUrl = tilePath + '.lrbm';
+        return new Promise((resolve, reject) => {
+            this.fileLoader.load(binaryUrl + '?' + this.tileCacheHash,
+                data => {
+                    let texture;
+                    try {
+                        texture = parseBinaryLowresTile(data);
+                    } catch (e) {
+                        // e.g. a tile that has not been re-rendered since the map switched to the binary format
+                        loadPng().then(resolve, reject);
+                        return;
+                    }
+                    resolve({texture, tileUrl: binaryUrl});
+                },
+                undefined,
+                () => loadPng().then(resolve, reject)
+            );
+        });
+    }
+
     load = (tileX, tileZ, cancelCheck = () => false) => {
-        let tileUrl = this.tilePath + this.lod + "/" + pathFromCoords(tileX, tileZ) + '.png';
+        let tilePath = this.tilePath + this.lod + "/" + pathFromCoords(tileX, tileZ);
 
         //await this.loadBlocker();
         return new Promise((resolve, reject) => {
-            this.textureLoader.load(tileUrl + '?' + this.tileCacheHash,
-                async texture => {
+            this.loadTexture(tilePath).then(
+                async ({texture, tileUrl}) => {
                     texture.anisotropy = 1;
                     texture.generateMipmaps = false;
                     texture.magFilter = NearestFilter;
@@ -127,7 +168,6 @@ export class LowresTileLoader {
 
                     resolve(object);
                 },
-                undefined,
                 reject
             );
         });
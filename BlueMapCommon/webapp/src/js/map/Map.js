@@ -74,7 +74,8 @@ export class Map {
 			lowres: {
 				tileSize: {x: 32, z: 32},
 				lodFactor: 5,
-				lodCount: 3
+				lodCount: 3,
+				format: "png"
 			}
 		});
 
@@ -176,7 +177,8 @@ export class Map {
 				this.data.lowres = {
 					tileSize: {...this.data.lowres.tileSize, ...vecArrToObj(worldSettings.lowres.tileSize, true)},
 					lodFactor: worldSettings.lowres.lodFactor !== undefined ? worldSettings.lowres.lodFactor : this.data.lowres.lodFactor,
-					lodCount: worldSettings.lowres.lodCount !== undefined ? worldSettings.lowres.lodCount : this.data.lowres.lodCount
+					lodCount: worldSettings.lowres.lodCount !== undefined ? worldSettings.lowres.lodCount : this.data.lowres.lodCount,
+					format: worldSettings.lowres.format !== undefined ? worldSettings.lowres.format : this.data.lowres.format
 				};
 
 				alert(this.events, `Settings for map '${this.data.id}' loaded.`, "fine");
@@ -339,6 +341,9 @@ export class Map {
 				wireframe: false,
 			});
 
+			// marks a missing octNormal attribute, so the shader falls back to the normal attribute
+			material.defaultAttributeValues.octNormal = [2, 2];
+
 			material.needsUpdate = true;
 			materials[i] = material;
 		}
@@ -77,7 +77,8 @@ export class TileLoader {
                     let translate = this.tileSettings.translate;
                     let scale = this.tileSettings.scale;
                     object.position.set(tileX * tileSize.x + translate.x, 0, tileZ * tileSize.z + translate.z);
-                    object.scale.set(scale.x, 1, scale.z);
+                    let positionScale = geometry.userData.positionScale || 1;
+                    object.scale.set(scale.x * positionScale, positionScale, scale.z * positionScale);
 
                     object.userData.tileUrl = tileUrl;
                     object.userData.tileType = "hires";
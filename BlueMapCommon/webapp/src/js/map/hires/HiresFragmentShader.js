@@ -49,11 +49,27 @@ varying float vSunlight;
 varying float vBlocklight;
 //varying float vDistance;
 
+// merged faces have their u-coordinate offset by 2 (UV_WRAP_FLAG_OFFSET) and repeat the texture once per block
+vec4 sampleTexture(float frameIndex) {
+	if (vUv.x < 2.0) return texture(textureImage, vec2(vUv.x, animationFrameHeight * (vUv.y + frameIndex)));
+
+	vec2 uv = fract(vec2(vUv.x - 2.0, vUv.y));
+	uv.y = animationFrameHeight * (uv.y + frameIndex);
+
+	#if __VERSION__ >= 300
+		// use the gradient of the continuous uvs, so the wrapping does not cause wrong mipmap-levels on the seams
+		vec2 gradUv = vec2(vUv.x, animationFrameHeight * vUv.y);
+		return textureGrad(textureImage, uv, dFdx(gradUv), dFdy(gradUv));
+	#else
+		return texture(textureImage, uv);
+	#endif
+}
+
 void main() {
 
-	vec4 color = texture(textureImage, vec2(vUv.x, animationFrameHeight * (vUv.y + animationFrameIndex)));
+	vec4 color = sampleTexture(animationFrameIndex);
 	if (animationInterpolation > 0.0) {
-		color = mix(color, texture(textureImage, vec2(vUv.x, animationFrameHeight * (vUv.y + animationInterpolationFrameIndex))), animationInterpolation);
+		color = mix(color, sampleTexture(animationInterpolationFrameIndex), animationInterpolation);
 	}
 	
 	if (color.a <= 0.01) discard;
@@ -23,6 +23,7 @@
  * THE SOFTWARE.
  */
 import { ShaderChunk } from 'three';
+import { COMPACT_UV_SCALE } from "./PRBMLoader";
 
 export const HIRES_VERTEX_SHADER = `
 #include <common>
@@ -31,6 +32,7 @@ ${ShaderChunk.logdepthbuf_pars_vertex}
 attribute float ao;
 attribute float sunlight;
 attribute float blocklight;
+attribute vec2 octNormal;
 
 varying vec3 vPosition;
 varying vec3 vNormal;
@@ -40,10 +42,19 @@ varying float vAo;
 varying float vSunlight;
 varying float vBlocklight;
 
+vec3 decodeOctahedralNormal(vec2 e) {
+	vec3 n = vec3(e, 1.0 - abs(e.x) - abs(e.y));
+	if (n.z < 0.0) n.xy = (1.0 - abs(n.yx)) * vec2(n.x >= 0.0 ? 1.0 : -1.0, n.y >= 0.0 ? 1.0 : -1.0);
+	return normalize(n);
+}
+
 void main() {
 	vPosition = position;
-	vNormal = normal;
-	vUv = uv;
+
+	// compact tiles have an octahedral encoded normal, others use the default-value (2, 2) for this attribute
+	bool compact = octNormal.x < 1.5;
+	vNormal = compact ? decodeOctahedralNormal(octNormal) : normal;
+	vUv = compact ? uv / ${COMPACT_UV_SCALE.toFixed(1)} : uv;
 	vColor = color;
 	vAo = ao;
 	vSunlight = sunlight;
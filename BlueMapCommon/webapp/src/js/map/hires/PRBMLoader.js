@@ -38,6 +38,21 @@ import {
 
 let bigEndianPlatform = null;
 
+/**
+ * Positions of version 2 (compact) files are 16bit fixed-point values with this many steps per block
+ * (needs to match PRBMWriter.COMPACT_POSITION_SCALE)
+ * @type {number}
+ */
+export const COMPACT_POSITION_SCALE = 64;
+
+/**
+ * Uvs of version 2 (compact) files are 16bit fixed-point values with this many steps per texture,
+ * they are scaled back in the vertex-shader
+ * (needs to match PRBMWriter.COMPACT_UV_SCALE)
+ * @type {number}
+ */
+export const COMPACT_UV_SCALE = 4096;
+
 /**
  * Check if the endianness of the platform is big-endian (most significant bit first)
  * @returns {boolean} True if big-endian, false if little-endian
@@ -138,7 +153,7 @@ function decodePrwm( buffer, offset ) {
 
     if ( version === 0 ) {
         throw new Error( 'PRWM decoder: Invalid format version: 0' );
-    } else if ( version !== 1 ) {
+    } else if ( version !== 1 && version !== 2 ) {
         throw new Error( 'PRWM decoder: Unsupported format version: ' + version );
     }
 
@@ -297,6 +312,9 @@ export class PRBMLoader {
 
         bufferGeometry.groups = data.groups;
 
+        // version 2 positions are fixed-point integers, the scale is applied with the model-matrix of the mesh
+        bufferGeometry.userData.positionScale = data.version === 2 ? 1 / COMPACT_POSITION_SCALE : 1;
+
         return bufferGeometry;
     }
 
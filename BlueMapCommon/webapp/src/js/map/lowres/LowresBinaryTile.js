@@ -0,0 +1,88 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+import {DataTexture, RGBAFormat, UnsignedByteType} from "three";
+
+const MAGIC = "LRBM";
+const FORMAT_VERSION = 1;
+const HEADER_SIZE = MAGIC.length + 5;
+const PLANE_COUNT = 7;
+
+/**
+ * Decodes a lowres-tile in the binary format (see LowresTileBinaryFormat.java) into a DataTexture with the same layout
+ * as the PNG lowres-tiles: the color in the upper half and the height/light data in the lower half.
+ * @param buffer {ArrayBuffer}
+ * @returns {DataTexture}
+ */
+export const parseBinaryLowresTile = buffer => {
+    let bytes = new Uint8Array(buffer);
+
+    for (let i = 0; i < MAGIC.length; i++) {
+        if (bytes[i] !== MAGIC.charCodeAt(i)) throw new Error("Not a binary lowres-tile!");
+    }
+
+    let version = bytes[MAGIC.length];
+    if (version !== FORMAT_VERSION) throw new Error(`Unsupported lowres-tile format-version: ${version}`);
+
+    let width = bytes[MAGIC.length + 1] | bytes[MAGIC.length + 2] << 8;
+    let height = bytes[MAGIC.length + 3] | bytes[MAGIC.length + 4] << 8;
+    let planeSize = width * height;
+    if (bytes.length < HEADER_SIZE + planeSize * PLANE_COUNT) throw new Error("Binary lowres-tile is incomplete!");
+
+    let r = HEADER_SIZE, g = r + planeSize, b = g + planeSize, a = b + planeSize;
+    let heightLow = a + planeSize, heightHigh = heightLow + planeSize, light = heightHigh + planeSize;
+
+    let data = new Uint8Array(planeSize * 2 * 4);
+    let dataOffset = planeSize * 4;
+    let lastHeight = 0, rowStartHeight = 0;
+
+    for (let i = 0; i < planeSize; i++) {
+        let p = i * 4;
+        let firstInRow = i % width === 0;
+        let ref = firstInRow ? p - width * 4 : p - 4;
+        let hasRef = ref >= 0;
+
+        // color (rgba)
+        data[p    ] = (hasRef ? data[ref    ] : 0) + bytes[r + i];
+        data[p + 1] = (hasRef ? data[ref + 1] : 0) + bytes[g + i];
+        data[p + 2] = (hasRef ? data[ref + 2] : 0) + bytes[b + i];
+        data[p + 3] = (hasRef ? data[ref + 3] : 0) + bytes[a + i];
+
+        // height/light (r: light, g: height high-byte, b: height low-byte, a: 255)
+        let refHeight = !hasRef ? 0 : firstInRow ? rowStartHeight : lastHeight;
+        let value = (refHeight + (bytes[heightLow + i] | bytes[heightHigh + i] << 8)) & 0xFFFF;
+        if (firstInRow) rowStartHeight = value;
+        lastHeight = value;
+
+        let d = dataOffset + p;
+        data[d    ] = (hasRef ? data[dataOffset + ref] : 0) + bytes[light + i];
+        data[d + 1] = value >> 8;
+        data[d + 2] = value & 0xFF;
+        data[d + 3] = 255;
+    }
+
+    let texture = new DataTexture(data, width, height * 2, RGBAFormat, UnsignedByteType);
+    texture.needsUpdate = true;
+    return texture;
+};
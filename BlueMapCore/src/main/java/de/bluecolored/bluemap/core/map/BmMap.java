@@ -84,6 +84,8 @@ public BmMap(String id, String name, World world, MapStorage storage, ResourcePa
         this.resourcePack = Objects.requireNonNull(resourcePack);
         this.mapSettings = Objects.requireNonNull(settings);
 
+        this.world.requestHeightRange(settings.getMinPos().getY(), settings.getMaxPos().getY());
+
         this.renderState = new MapRenderState();
         loadRenderState();
 
@@ -103,7 +105,10 @@ public BmMap(String id, String name, World world, MapStorage storage, ResourcePa
                 storage,
                 new Grid(settings.getLowresTileSize()),
                 settings.getLodCount(),
-                settings.getLodFactor()
+                settings.getLodFactor(),
+                settings.getLowresCompressionLevel(),
+                settings.getLowresCacheMemoryLimit() * 1024L * 1024L,
+                settings.isBinaryLowresTiles()
         );
 
         this.tileFilter = t -> true;
@@ -50,4 +50,13 @@ public interface MapSettings extends RenderSettings {
 
     int getLodFactor();
 
+    int getLowresCompressionLevel();
+
+    /**
+     * The memory-limit in MiB for all cached lowres-tiles of this map
+     */
+    int getLowresCacheMemoryLimit();
+
+    boolean isBinaryLowresTiles();
+
 }
@@ -64,6 +64,7 @@ public JsonElement serialize(BmMap map, Type typeOfSrc, JsonSerializationContext
         lowres.add("tileSize", context.serialize(lowresTileManager.getTileGrid().getGridSize()));
         lowres.add("lodFactor", context.serialize(lowresTileManager.getLodFactor()));
         lowres.add("lodCount", context.serialize(lowresTileManager.getLodCount()));
+        lowres.add("format", context.serialize(lowresTileManager.isBinaryFormat() ? "binary" : "png"));
         root.add("lowres", lowres);
 
         // startPos
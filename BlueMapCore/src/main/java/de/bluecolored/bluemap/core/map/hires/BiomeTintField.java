@@ -0,0 +1,195 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import de.bluecolored.bluemap.core.util.math.Color;
+import de.bluecolored.bluemap.core.world.Biome;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A field of biome-colors (e.g. the grass-tint) blended over a 5x3x5 area for each block of a {@link TileVoxelVolume}.<br>
+ * The field is calculated lazily in slabs of 16 blocks height using separable box-filters, so each blended color
+ * can then be looked up in constant time instead of sampling all 75 surrounding biomes for every tinted block.
+ */
+public class BiomeTintField {
+
+    private static final int
+            RADIUS_XZ = 2,
+            RADIUS_Y = 1,
+            WINDOW_XZ = RADIUS_XZ * 2 + 1,
+            WINDOW_Y = RADIUS_Y * 2 + 1,
+            SLAB_HEIGHT = 16;
+
+    public enum Tint {
+        WATER,
+        FOLIAGE,
+        GRASS
+    }
+
+    @FunctionalInterface
+    public interface BiomeColorFunction {
+        Color getColor(Biome biome, Color target);
+    }
+
+    private final TileVoxelVolume volume;
+    private final BiomeColorFunction colorFunction;
+
+    private int minX, minY, minZ, sizeX, sizeY, sizeZ;
+    private float[][] slabs = new float[0][];
+    private boolean[] slabCalculated = new boolean[0];
+
+    private float[] columnBuffer = new float[0], yBlended = new float[0], xyBlended = new float[0];
+    private final Color tempColor = new Color();
+
+    BiomeTintField(TileVoxelVolume volume, BiomeColorFunction colorFunction) {
+        this.volume = volume;
+        this.colorFunction = colorFunction;
+        reset();
+    }
+
+    /**
+     * Invalidates all calculated colors, needs to be called whenever the volume has been re-initialized
+     */
+    void reset() {
+        this.minX = volume.getMinX() + RADIUS_XZ;
+        this.minZ = volume.getMinZ() + RADIUS_XZ;
+        this.minY = volume.getMinY() + RADIUS_Y;
+        this.sizeX = Math.max(volume.getSizeX() - RADIUS_XZ * 2, 0);
+        this.sizeZ = Math.max(volume.getSizeZ() - RADIUS_XZ * 2, 0);
+        this.sizeY = Math.max(volume.getSizeY() - RADIUS_Y * 2, 0);
+
+        int slabCount = (sizeY + SLAB_HEIGHT - 1) / SLAB_HEIGHT;
+        if (slabs.length < slabCount) {
+            slabs = Arrays.copyOf(slabs, slabCount);
+            slabCalculated = new boolean[slabCount];
+        }
+        Arrays.fill(slabCalculated, false);
+    }
+
+    /**
+     * Sets the blended color at the given position to the target and returns it,
+     * or returns null if the position is outside this field.<br>
+     * The returned color is flattened, equivalent to adding all 75 biome-colors and calling {@link Color#flatten()}.
+     */
+    public @Nullable Color get(int x, int y, int z, Color target) {
+        x -= minX; y -= minY; z -= minZ;
+        if (
+                x < 0 || x >= sizeX ||
+                y < 0 || y >= sizeY ||
+                z < 0 || z >= sizeZ
+        ) return null;
+
+        int slab = y / SLAB_HEIGHT;
+        if (!slabCalculated[slab]) calculateSlab(slab);
+
+        int i = ((x * sizeZ + z) * SLAB_HEIGHT + y % SLAB_HEIGHT) * 4;
+        float[] values = slabs[slab];
+        return target
+                .set(values[i], values[i + 1], values[i + 2], values[i + 3], true)
+                .flatten();
+    }
+
+    private void calculateSlab(int slab) {
+        int slabMinY = slab * SLAB_HEIGHT;
+        int slabHeight = Math.min(SLAB_HEIGHT, sizeY - slabMinY);
+        int inputHeight = slabHeight + RADIUS_Y * 2;
+
+        int volumeSizeX = volume.getSizeX(), volumeSizeZ = volume.getSizeZ(), volumeSizeY = volume.getSizeY();
+
+        int yBlendedSize = volumeSizeX * volumeSizeZ * SLAB_HEIGHT * 4;
+        int xyBlendedSize = sizeX * volumeSizeZ * SLAB_HEIGHT * 4;
+        int slabSize = sizeX * sizeZ * SLAB_HEIGHT * 4;
+        if (columnBuffer.length < inputHeight * 4) columnBuffer = new float[inputHeight * 4];
+        if (yBlended.length < yBlendedSize) yBlended = new float[yBlendedSize];
+        if (xyBlended.length < xyBlendedSize) xyBlended = new float[xyBlendedSize];
+        if (slabs[slab] == null || slabs[slab].length < slabSize) slabs[slab] = new float[slabSize];
+        float[] result = slabs[slab];
+
+        // blend along y
+        Biome lastBiome = null;
+        float r = 0, g = 0, b = 0, a = 0;
+        for (int x = 0; x < volumeSizeX; x++) {
+            for (int z = 0; z < volumeSizeZ; z++) {
+                int column = (x * volumeSizeZ + z) * volumeSizeY + slabMinY; // == volume-index of the first input block
+
+                for (int y = 0; y < inputHeight; y++) {
+                    Biome biome = volume.getBiome(column + y);
+                    if (biome != lastBiome) {
+                        Color color = colorFunction.getColor(biome, tempColor);
+                        r = color.r; g = color.g; b = color.b; a = color.a;
+                        lastBiome = biome;
+                    }
+
+                    int ci = y * 4;
+                    columnBuffer[ci    ] = r;
+                    columnBuffer[ci + 1] = g;
+                    columnBuffer[ci + 2] = b;
+                    columnBuffer[ci + 3] = a;
+                }
+
+                int ti = (x * volumeSizeZ + z) * SLAB_HEIGHT * 4;
+                for (int y = 0; y < slabHeight; y++) {
+                    for (int c = 0; c < 4; c++) {
+                        float sum = 0;
+                        for (int w = 0; w < WINDOW_Y; w++) sum += columnBuffer[(y + w) * 4 + c];
+                        yBlended[ti + y * 4 + c] = sum;
+                    }
+                }
+            }
+        }
+
+        // blend along x
+        int strideX = volumeSizeZ * SLAB_HEIGHT * 4;
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < volumeSizeZ; z++) {
+                int ti = (x * volumeSizeZ + z) * SLAB_HEIGHT * 4;
+                for (int yc = 0; yc < slabHeight * 4; yc++) {
+                    float sum = 0;
+                    for (int w = 0; w < WINDOW_XZ; w++) sum += yBlended[ti + w * strideX + yc];
+                    xyBlended[ti + yc] = sum;
+                }
+            }
+        }
+
+        // blend along z
+        int strideZ = SLAB_HEIGHT * 4;
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                int si = (x * volumeSizeZ + z) * SLAB_HEIGHT * 4;
+                int ti = (x * sizeZ + z) * SLAB_HEIGHT * 4;
+                for (int yc = 0; yc < slabHeight * 4; yc++) {
+                    float sum = 0;
+                    for (int w = 0; w < WINDOW_XZ; w++) sum += xyBlended[si + w * strideZ + yc];
+                    result[ti + yc] = sum;
+                }
+            }
+        }
+
+        slabCalculated[slab] = true;
+    }
+
+}
@@ -67,16 +67,17 @@ public void render(World world, Vector2i tile, TileMetaConsumer tileMetaConsumer
         Vector3i modelMin = new Vector3i(tileMin.getX(), Integer.MIN_VALUE, tileMin.getY());
         Vector3i modelMax = new Vector3i(tileMax.getX(), Integer.MAX_VALUE, tileMax.getY());
 
-        TileModel model = TileModel.instancePool().claimInstance();
+        TileModel model = TileModel.pool().claim();
 
         renderer.render(world, modelMin, modelMax, model, tileMetaConsumer);
 
         if (save){
+            if (renderer.getRenderSettings().isMergeHiresFaces()) model.mergeFaces();
             model.sort();
             save(model, tile);
         }
 
-        TileModel.instancePool().recycleInstance(model);
+        TileModel.pool().recycle(model);
     }
 
     private void save(final TileModel model, Vector2i tile) {
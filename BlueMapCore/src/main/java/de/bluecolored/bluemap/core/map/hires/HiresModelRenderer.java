@@ -30,7 +30,10 @@
 import de.bluecolored.bluemap.core.map.hires.blockmodel.BlockStateModelFactory;
 import de.bluecolored.bluemap.core.resources.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.util.math.Color;
+import de.bluecolored.bluemap.core.world.BlockProperties;
+import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.LightData;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
 import de.bluecolored.bluemap.core.world.World;
 
@@ -46,6 +49,10 @@ public HiresModelRenderer(ResourcePack resourcePack, TextureGallery textureGalle
         this.renderSettings = renderSettings;
     }
 
+    public RenderSettings getRenderSettings() {
+        return renderSettings;
+    }
+
     public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel model) {
         render(world, modelMin, modelMax, model, (x, z, c, h, l) -> {});
     }
@@ -58,11 +65,30 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
         // create new for each tile-render since the factory is not threadsafe
         BlockStateModelFactory modelFactory = new BlockStateModelFactory(resourcePack, textureGallery, renderSettings);
 
+        BlockNeighborhood<?> block = new BlockNeighborhood<>(resourcePack, renderSettings, world, 0, 0, 0);
+        BlockModelView blockModel = new BlockModelView(model);
+
+        // buffer all the data needed to render this tile
+        TileVoxelVolume volume = TileVoxelVolume.instancePool().claimInstance()
+                .init(world, resourcePack, renderSettings, min, max);
+        block.setVolume(volume);
+
+        try {
+            renderBlocks(volume, min, max, modelAnchor, modelFactory, block, blockModel, tileMetaConsumer);
+        } finally {
+            block.setVolume(null);
+            TileVoxelVolume.instancePool().recycleInstance(volume);
+        }
+    }
+
+    private void renderBlocks(
+            TileVoxelVolume volume, Vector3i min, Vector3i max, Vector3i modelAnchor,
+            BlockStateModelFactory modelFactory, BlockNeighborhood<?> block, BlockModelView blockModel,
+            TileMetaConsumer tileMetaConsumer
+    ) {
         int maxHeight, minY, maxY;
         double topBlockLight;
         Color columnColor = new Color(), blockColor = new Color();
-        BlockNeighborhood<?> block = new BlockNeighborhood<>(resourcePack, renderSettings, world, 0, 0, 0);
-        BlockModelView blockModel = new BlockModelView(model);
 
         int x, y, z;
         for (x = min.getX(); x <= max.getX(); x++){
@@ -74,11 +100,42 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
                 columnColor.set(0, 0, 0, 0, true);
 
                 if (renderSettings.isInsideRenderBoundaries(x, z)) {
-                    Chunk chunk = world.getChunkAtBlock(x, z);
+                    Chunk chunk = volume.getChunk(x, z);
                     minY = Math.max(min.getY(), chunk.getMinY(x, z));
                     maxY = Math.min(max.getY(), chunk.getMaxY(x, z));
 
+                    int skipFromY = Integer.MIN_VALUE, skipToY = Integer.MIN_VALUE;
                     for (y = maxY; y >= minY; y--) {
+
+                        // check if we can skip (parts of) the section we are entering
+                        if (y == maxY || (y & 0xF) == 0xF) {
+                            int sectionMinY = Math.max(y & ~0xF, minY);
+                            BlockState sectionState = chunk.getUniformSectionBlockState(y >> 4);
+
+                            if (sectionState != null) {
+
+                                // air-sections have no models, we only need to update the topBlockLight
+                                if (sectionState.isAir()) {
+                                    topBlockLight = Math.max(topBlockLight, getMaxBlockLight(volume, x, sectionMinY, y, z) * (1 - columnColor.a));
+                                    y = sectionMinY;
+                                    continue;
+                                }
+
+                                // all faces of blocks that are completely enclosed in a culling section will be culled
+                                if (isEnclosed(sectionState, x, sectionMinY, y, z)) {
+                                    skipFromY = y - 1;
+                                    skipToY = sectionMinY + 1;
+                                }
+
+                            }
+                        }
+
+                        if (y == skipFromY) {
+                            topBlockLight = Math.max(topBlockLight, getMaxBlockLight(volume, x, skipToY, skipFromY, z) * (1 - columnColor.a));
+                            y = skipToY;
+                            continue;
+                        }
+
                         block.set(x, y, z);
                         if (!block.isInsideRenderBounds()) continue;
 
@@ -109,4 +166,45 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
             }
         }
     }
+
+    /**
+     * Checks if all blocks in the section between minY and maxY (inclusive) of the column x/z are enclosed
+     * by culling blocks of the (uniform) section, which means none of their faces would be rendered.
+     */
+    private boolean isEnclosed(BlockState sectionState, int x, int minY, int maxY, int z) {
+        // there must be at least one block between the first and last block
+        if (maxY - minY < 2) return false;
+
+        // horizontal neighbors must be in the same section
+        int localX = x & 0xF, localZ = z & 0xF;
+        if (localX == 0 || localX == 0xF || localZ == 0 || localZ == 0xF) return false;
+
+        // neighbors must not be affected by render-edges
+        if (
+                renderSettings.isRenderEdges() && !(
+                        renderSettings.isInsideRenderBoundaries(x - 1, minY, z - 1) &&
+                        renderSettings.isInsideRenderBoundaries(x + 1, maxY, z + 1)
+                )
+        ) return false;
+
+        if (sectionState.isWaterlogged()) return false;
+        BlockProperties properties = resourcePack.getBlockProperties(sectionState);
+        return properties.isCulling() && !properties.isAlwaysWaterlogged();
+    }
+
+    private int getMaxBlockLight(TileVoxelVolume volume, int x, int minY, int maxY, int z) {
+        int maxBlockLight = 0;
+        for (int y = minY; y <= maxY; y++) {
+            if (!renderSettings.isInsideRenderBoundaries(x, y, z)) continue;
+
+            int index = volume.index(x, y, z);
+            int blockLight = index >= 0 ?
+                    volume.getBlockLight(index) :
+                    volume.getChunk(x, z).getLightData(x, y, z, new LightData(0, 0)).getBlockLight();
+
+            if (blockLight > maxBlockLight) maxBlockLight = blockLight;
+        }
+        return maxBlockLight;
+    }
+
 }
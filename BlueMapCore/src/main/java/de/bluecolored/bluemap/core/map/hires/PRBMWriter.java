@@ -25,18 +25,43 @@
 package de.bluecolored.bluemap.core.map.hires;
 
 import de.bluecolored.bluemap.core.util.math.VectorM3f;
-import de.bluecolored.bluemap.core.util.stream.CountingOutputStream;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 @SuppressWarnings("unused")
 public class PRBMWriter implements Closeable {
 
     private static final int FORMAT_VERSION = 1;
-    private static final int HEADER_BITS = 0b0_0_0_00111; // indexed (no) _ indices-type (-) _ endianness (little) _ attribute-nr (7)
+    private static final int FORMAT_VERSION_COMPACT = 2; // quantized positions, uvs and normals
+    private static final int HEADER_BITS = 0b1_0_0_00111; // indexed (yes) _ indices-type (16bit) _ endianness (little) _ attribute-nr (7)
+    private static final int HEADER_INDICES_32BIT = 1 << 6;
+
+    /**
+     * Positions in the compact format are signed 16bit fixed-point values with this many steps per block
+     */
+    public static final int COMPACT_POSITION_SCALE = 64;
+
+    /**
+     * Uvs in the compact format are unsigned 16bit fixed-point values with this many steps per texture (0-1),
+     * this leaves room for the repeating uvs of merged faces
+     */
+    public static final int COMPACT_UV_SCALE = 4096;
+
+    // welded vertex: position (3), uv (2), color + ao (1), normal (1), sunlight + blocklight (1)
+    // position, uv and normal are stored already encoded in the format that is written (float-bits or quantized)
+    private static final int
+            VI_POSITION = 0,
+            VI_UV = 3,
+            VI_COLOR_AO = 5,
+            VI_NORMAL = 6,
+            VI_LIGHT = 7,
+            VERTEX_SIZE = 8;
 
     private static final int ATTRIBUTE_TYPE_FLOAT = 0;
     private static final int ATTRIBUTE_TYPE_INTEGER = 1 << 7;
@@ -57,59 +82,232 @@ public class PRBMWriter implements Closeable {
     private static final int ATTRIBUTE_ENCODING_UNSIGNED_16BIT_INT = 8;
     private static final int ATTRIBUTE_ENCODING_UNSIGNED_32BIT_INT = 10;
 
-    private final CountingOutputStream out;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() ->
+            ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+    );
 
+    private final OutputStream out;
+    private final ByteBuffer buffer;
+    private long flushedCount;
+
+    /**
+     * Creates a new writer, all data is collected in a (per thread reused) little-endian buffer
+     * and written to the stream in bulk.<br>
+     * A writer must only be used by the thread that created it.
+     */
     public PRBMWriter(OutputStream out) {
-        this.out = new CountingOutputStream(out);
+        this.out = out;
+        this.buffer = BUFFER.get();
+        this.buffer.clear();
+        this.flushedCount = 0;
     }
 
     public void write(TileModel model) throws IOException {
-        out.write(FORMAT_VERSION); // version - 1 byte
-        out.write(HEADER_BITS); // format info - 1 byte
-        write3byteValue(model.size * 3); // number of values - 3 bytes
-        write3byteValue(0); // number of indices (0 for non-indexed) - 3 bytes
-
-        writePositionArray(model);
-        writeNormalArray(model);
-        writeColorArray(model);
-        writeUvArray(model);
-        writeAoArray(model);
-        writeBlocklightArray(model);
-        writeSunlightArray(model);
+        boolean compact = isCompactEncodable(model);
+        int vertexCount = weldVertices(model, compact);
+        int indexCount = model.size * 3;
+        boolean largeIndices = vertexCount > 0xFFFF;
+
+        writeByte(compact ? FORMAT_VERSION_COMPACT : FORMAT_VERSION); // version - 1 byte
+        writeByte(HEADER_BITS | (largeIndices ? HEADER_INDICES_32BIT : 0)); // format info - 1 byte
+        write3byteValue(vertexCount); // number of values - 3 bytes
+        write3byteValue(indexCount); // number of indices - 3 bytes
+
+        writePositionArray(model, vertexCount, compact);
+        writeNormalArray(model, vertexCount, compact);
+        writeColorArray(model, vertexCount);
+        writeUvArray(model, vertexCount, compact);
+        writeAoArray(model, vertexCount);
+        writeBlocklightArray(model, vertexCount);
+        writeSunlightArray(model, vertexCount);
+
+        writeIndexArray(model, indexCount, largeIndices);
 
         writeMaterialGroups(model);
+
+        flush();
     }
 
     @Override
     public void close() throws IOException {
+        flush();
         out.close();
     }
 
-    private void writePositionArray(TileModel model) throws IOException {
+    /**
+     * Tests if all positions and uvs fit into the fixed-point ranges of the compact format.
+     * If not, the tile falls back to the float-based format.
+     */
+    private boolean isCompactEncodable(TileModel model) {
+        float maxPosition = Short.MAX_VALUE / (float) COMPACT_POSITION_SCALE;
+        float minPosition = Short.MIN_VALUE / (float) COMPACT_POSITION_SCALE;
+
         float[] position = model.position;
+        int posSize = model.size * TileModel.FI_POSITION;
+        for (int i = 0; i < posSize; i++) {
+            float p = position[i];
+            if (!(p >= minPosition && p <= maxPosition)) return false; // also catches NaN
+        }
+
+        float maxUv = 0xFFFF / (float) COMPACT_UV_SCALE;
+
+        float[] uv = model.uv;
+        int uvSize = model.size * TileModel.FI_UV;
+        for (int i = 0; i < uvSize; i++) {
+            float u = uv[i];
+            if (!(u >= 0f && u <= maxUv)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Encodes all vertices of the model the way they will be written and merges all vertices that end up identical.
+     * Fills {@link TileModel#indexedVertices} with the unique vertices and {@link TileModel#vertexIndex}
+     * with the index of the unique vertex for each vertex of each face.
+     *
+     * @return the number of unique vertices
+     */
+    private int weldVertices(TileModel model, boolean compact) {
+        int vertexCount = model.size * 3;
+
+        if (model.vertexIndex == null || model.vertexIndex.length < vertexCount) {
+            model.vertexIndex = new int[vertexCount];
+            model.indexedVertices = new int[vertexCount * VERTEX_SIZE];
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max(vertexCount, 1)) << 2;
+        if (model.vertexIndexTable == null || model.vertexIndexTable.length < tableSize)
+            model.vertexIndexTable = new int[tableSize];
+
+        int[] vertices = model.indexedVertices;
+        int[] index = model.vertexIndex;
+        int[] table = model.vertexIndexTable;
+        int tableMask = tableSize - 1;
+        Arrays.fill(table, 0, tableSize, 0);
+
+        float[] position = model.position, uv = model.uv, color = model.color, ao = model.ao;
+        VectorM3f normal = new VectorM3f(0, 0, 0);
+
+        int uniqueCount = 0;
+        int pi, ui, ci, normalBits, colorBits, lightBits, vi, hash, slot, entry, i, j, k;
+        for (i = 0; i < model.size; i++) {
+            pi = i * TileModel.FI_POSITION;
+            calculateSurfaceNormal(
+                    position[pi], position[pi + 1], position[pi + 2],
+                    position[pi + 3], position[pi + 4], position[pi + 5],
+                    position[pi + 6], position[pi + 7], position[pi + 8],
+                    normal
+            );
+            normalBits = compact ?
+                    octahedralNormalValue(normal.x, normal.y, normal.z) :
+                    normalizedSignedByteValue(normal.x) |
+                    normalizedSignedByteValue(normal.y) << 8 |
+                    normalizedSignedByteValue(normal.z) << 16;
+
+            ci = i * TileModel.FI_COLOR;
+            colorBits =
+                    normalizedUnsignedByteValue(color[ci]) |
+                    normalizedUnsignedByteValue(color[ci + 1]) << 8 |
+                    normalizedUnsignedByteValue(color[ci + 2]) << 16;
+
+            lightBits =
+                    (model.sunlight[i * TileModel.FI_SUNLIGHT] & 0xFF) |
+                    (model.blocklight[i * TileModel.FI_BLOCKLIGHT] & 0xFF) << 8;
+
+            for (j = 0; j < 3; j++) {
+                // write the vertex to the next free slot, it only stays there if it is unique
+                vi = uniqueCount * VERTEX_SIZE;
+                pi = i * TileModel.FI_POSITION + j * 3;
+                ui = i * TileModel.FI_UV + j * 2;
+                if (compact) {
+                    vertices[vi + VI_POSITION    ] = fixedPointPositionValue(position[pi    ]);
+                    vertices[vi + VI_POSITION + 1] = fixedPointPositionValue(position[pi + 1]);
+                    vertices[vi + VI_POSITION + 2] = fixedPointPositionValue(position[pi + 2]);
+                    vertices[vi + VI_UV          ] = fixedPointUvValue(uv[ui    ]);
+                    vertices[vi + VI_UV + 1      ] = fixedPointUvValue(uv[ui + 1]);
+                } else {
+                    vertices[vi + VI_POSITION    ] = Float.floatToIntBits(position[pi    ] + 0f); // + 0f to merge -0 and 0
+                    vertices[vi + VI_POSITION + 1] = Float.floatToIntBits(position[pi + 1] + 0f);
+                    vertices[vi + VI_POSITION + 2] = Float.floatToIntBits(position[pi + 2] + 0f);
+                    vertices[vi + VI_UV          ] = Float.floatToIntBits(uv[ui    ] + 0f);
+                    vertices[vi + VI_UV + 1      ] = Float.floatToIntBits(uv[ui + 1] + 0f);
+                }
+                vertices[vi + VI_COLOR_AO    ] = colorBits | normalizedUnsignedByteValue(ao[i * TileModel.FI_AO + j]) << 24;
+                vertices[vi + VI_NORMAL      ] = normalBits;
+                vertices[vi + VI_LIGHT       ] = lightBits;
+
+                hash = 1;
+                for (k = 0; k < VERTEX_SIZE; k++) hash = hash * 31 + vertices[vi + k];
+                hash ^= hash >>> 16;
+
+                // open addressing with linear probing, table entries are the vertex-index + 1
+                slot = hash & tableMask;
+                while (true) {
+                    entry = table[slot];
+                    if (entry == 0) {
+                        table[slot] = uniqueCount + 1;
+                        index[i * 3 + j] = uniqueCount++;
+                        break;
+                    }
+                    if (equalVertices(vertices, (entry - 1) * VERTEX_SIZE, vi)) {
+                        index[i * 3 + j] = entry - 1;
+                        break;
+                    }
+                    slot = (slot + 1) & tableMask;
+                }
+            }
+        }
+
+        return uniqueCount;
+    }
+
+    private static boolean equalVertices(int[] vertices, int v1, int v2) {
+        for (int k = 0; k < VERTEX_SIZE; k++) {
+            if (vertices[v1 + k] != vertices[v2 + k]) return false;
+        }
+        return true;
+    }
+
+    private void writePositionArray(TileModel model, int vertexCount, boolean compact) throws IOException {
+        int[] vertices = model.indexedVertices;
 
         writeString("position");
-        out.write(
+        writeByte(
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NOT_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_3D_VEC |
-                ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT
+                (compact ? ATTRIBUTE_ENCODING_SIGNED_16BIT_INT : ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT)
         );
 
         writePadding();
 
-        int posSize = model.size * TileModel.FI_POSITION;
-        for (int i = 0; i < posSize; i++) {
-            writeFloat(position[i]);
+        int vi;
+        for (int i = 0; i < vertexCount; i++) {
+            vi = i * VERTEX_SIZE + VI_POSITION;
+            if (compact) {
+                write2byteValue(vertices[vi] & 0xFFFF);
+                write2byteValue(vertices[vi + 1] & 0xFFFF);
+                write2byteValue(vertices[vi + 2] & 0xFFFF);
+            } else {
+                write4byteValue(vertices[vi]);
+                write4byteValue(vertices[vi + 1]);
+                write4byteValue(vertices[vi + 2]);
+            }
         }
     }
 
-    private void writeNormalArray(TileModel model) throws IOException {
-        VectorM3f normal = new VectorM3f(0, 0, 0);
-        float[] position = model.position;
+    private void writeNormalArray(TileModel model, int vertexCount, boolean compact) throws IOException {
+        int[] vertices = model.indexedVertices;
+
+        if (compact) {
+            writeOctahedralNormalArray(model, vertexCount);
+            return;
+        }
 
         writeString("normal");
-        out.write(
+        writeByte(
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_3D_VEC |
@@ -118,29 +316,42 @@ private void writeNormalArray(TileModel model) throws IOException {
 
         writePadding();
 
-        int pi, i, j;
-        for (i = 0; i < model.size; i++) {
-            pi = i * TileModel.FI_POSITION;
-            calculateSurfaceNormal(
-                    position[pi], position[pi + 1], position[pi + 2],
-                    position[pi + 3], position[pi + 4], position[pi + 5],
-                    position[pi + 6], position[pi + 7], position[pi + 8],
-                    normal
-            );
+        int normal;
+        for (int i = 0; i < vertexCount; i++) {
+            normal = vertices[i * VERTEX_SIZE + VI_NORMAL];
+            ensureRemaining(3);
+            buffer.put((byte) normal);
+            buffer.put((byte) (normal >> 8));
+            buffer.put((byte) (normal >> 16));
+        }
+    }
 
-            for (j = 0; j < 3; j++) { // all 3 points
-                writeNormalizedSignedByteValue(normal.x);
-                writeNormalizedSignedByteValue(normal.y);
-                writeNormalizedSignedByteValue(normal.z);
-            }
+    private void writeOctahedralNormalArray(TileModel model, int vertexCount) throws IOException {
+        int[] vertices = model.indexedVertices;
+
+        writeString("octNormal");
+        writeByte(
+                ATTRIBUTE_TYPE_FLOAT |
+                ATTRIBUTE_NORMALIZED |
+                ATTRIBUTE_CARDINALITY_2D_VEC |
+                ATTRIBUTE_ENCODING_SIGNED_8BIT_INT
+        );
+
+        writePadding();
+
+        int normal;
+        for (int i = 0; i < vertexCount; i++) {
+            normal = vertices[i * VERTEX_SIZE + VI_NORMAL];
+            ensureRemaining(2);
+            buffer.putShort((short) normal);
         }
     }
 
-    private void writeColorArray(TileModel model) throws IOException {
-        float[] color = model.color;
+    private void writeColorArray(TileModel model, int vertexCount) throws IOException {
+        int[] vertices = model.indexedVertices;
 
         writeString("color");
-        out.write(
+        writeByte(
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_3D_VEC |
@@ -149,40 +360,56 @@ private void writeColorArray(TileModel model) throws IOException {
 
         writePadding();
 
-        int colorSize = model.size * TileModel.FI_COLOR, i, j;
-        for (i = 0; i < colorSize; i += 3) {
-            for (j = 0; j < 3; j++) {
-                writeNormalizedUnsignedByteValue(color[i]);
-                writeNormalizedUnsignedByteValue(color[i + 1]);
-                writeNormalizedUnsignedByteValue(color[i + 2]);
-            }
+        int color;
+        for (int i = 0; i < vertexCount; i++) {
+            color = vertices[i * VERTEX_SIZE + VI_COLOR_AO];
+            ensureRemaining(3);
+            buffer.put((byte) color);
+            buffer.put((byte) (color >> 8));
+            buffer.put((byte) (color >> 16));
         }
     }
 
-    private void writeUvArray(TileModel model) throws IOException {
-        float[] uv = model.uv;
+    private void writeUvArray(TileModel model, int vertexCount, boolean compact) throws IOException {
+        int[] vertices = model.indexedVertices;
 
         writeString("uv");
-        out.write(
-                ATTRIBUTE_TYPE_FLOAT |
-                ATTRIBUTE_NOT_NORMALIZED |
-                ATTRIBUTE_CARDINALITY_2D_VEC |
-                ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT
-        );
+        if (compact) {
+            writeByte(
+                    ATTRIBUTE_TYPE_FLOAT |
+                    ATTRIBUTE_NOT_NORMALIZED |
+                    ATTRIBUTE_CARDINALITY_2D_VEC |
+                    ATTRIBUTE_ENCODING_UNSIGNED_16BIT_INT
+            );
+        } else {
+            writeByte(
+                    ATTRIBUTE_TYPE_FLOAT |
+                    ATTRIBUTE_NOT_NORMALIZED |
+                    ATTRIBUTE_CARDINALITY_2D_VEC |
+                    ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT
+            );
+        }
 
         writePadding();
 
-        int uvSize = model.size * TileModel.FI_UV;
-        for (int i = 0; i < uvSize; i++) {
-            writeFloat(uv[i]);
+        int vi;
+        for (int i = 0; i < vertexCount; i++) {
+            vi = i * VERTEX_SIZE + VI_UV;
+            if (compact) {
+                write2byteValue(vertices[vi]);
+                write2byteValue(vertices[vi + 1]);
+            } else {
+                write4byteValue(vertices[vi]);
+                write4byteValue(vertices[vi + 1]);
+            }
         }
     }
 
-    private void writeAoArray(TileModel model) throws IOException {
-        float[] ao = model.ao;
+    private void writeAoArray(TileModel model, int vertexCount) throws IOException {
+        int[] vertices = model.indexedVertices;
 
         writeString("ao");
-        out.write(
+        writeByte(
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_SCALAR |
@@ -191,17 +418,16 @@ private void writeAoArray(TileModel model) throws IOException {
 
         writePadding();
 
-        int uvSize = model.size * TileModel.FI_AO;
-        for (int i = 0; i < uvSize; i++) {
-            writeNormalizedUnsignedByteValue(ao[i]);
+        for (int i = 0; i < vertexCount; i++) {
+            writeByte(vertices[i * VERTEX_SIZE + VI_COLOR_AO] >> 24);
         }
     }
 
-    private void writeBlocklightArray(TileModel model) throws IOException {
-        byte[] blocklight = model.blocklight;
+    private void writeBlocklightArray(TileModel model, int vertexCount) throws IOException {
+        int[] vertices = model.indexedVertices;
 
         writeString("blocklight");
-        out.write(
+        writeByte(
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NOT_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_SCALAR |
@@ -210,19 +436,16 @@ private void writeBlocklightArray(TileModel model) throws IOException {
 
         writePadding();
 
-        int blSize = model.size * TileModel.FI_BLOCKLIGHT;
-        for (int i = 0; i < blSize; i++) {
-            out.write(blocklight[i]);
-            out.write(blocklight[i]);
-            out.write(blocklight[i]);
+        for (int i = 0; i < vertexCount; i++) {
+            writeByte(vertices[i * VERTEX_SIZE + VI_LIGHT] >> 8);
         }
     }
 
-    private void writeSunlightArray(TileModel model) throws IOException {
-        byte[] sunlight = model.sunlight;
+    private void writeSunlightArray(TileModel model, int vertexCount) throws IOException {
+        int[] vertices = model.indexedVertices;
 
         writeString("sunlight");
-        out.write(
+        writeByte(
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NOT_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_SCALAR |
@@ -231,11 +454,24 @@ private void writeSunlightArray(TileModel model) throws IOException {
 
         writePadding();
 
-        int slSize = model.size * TileModel.FI_SUNLIGHT;
-        for (int i = 0; i < slSize; i++) {
-            out.write(sunlight[i]);
-            out.write(sunlight[i]);
-            out.write(sunlight[i]);
+        for (int i = 0; i < vertexCount; i++) {
+            writeByte(vertices[i * VERTEX_SIZE + VI_LIGHT]);
+        }
+    }
+
+    private void writeIndexArray(TileModel model, int indexCount, boolean largeIndices) throws IOException {
+        int[] index = model.vertexIndex;
+
+        writePadding();
+
+        if (largeIndices) {
+            for (int i = 0; i < indexCount; i++) {
+                write4byteValue(index[i]);
+            }
+        } else {
+            for (int i = 0; i < indexCount; i++) {
+                write2byteValue(index[i]);
+            }
         }
     }
 
@@ -243,7 +479,15 @@ private void writeMaterialGroups(TileModel model) throws IOException {
 
         writePadding();
 
-        if (model.size > 0) {
+        if (model.materialGroupCount >= 0) {
+            // groups recorded by TileModel.sort()
+            int[] groups = model.materialGroups;
+            for (int g = 0; g < model.materialGroupCount * 3; g += 3) {
+                write4byteValue(groups[g]);
+                write4byteValue(groups[g + 1] * 3);
+                write4byteValue(groups[g + 2] * 3);
+            }
+        } else if (model.size > 0) {
             int[] materialIndex = model.materialIndex;
 
             int     miSize = model.size * TileModel.FI_MATERIAL_INDEX,
@@ -277,49 +521,90 @@ private void writeMaterialGroups(TileModel model) throws IOException {
     }
 
     private void writePadding() throws IOException {
-        int paddingBytes = (int) (-out.getCount() & 0x3);
+        int paddingBytes = (int) (-getCount() & 0x3);
         for (int i = 0; i < paddingBytes; i++) {
-            out.write(0);
+            writeByte(0);
         }
     }
 
+    private void writeByte(int value) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) value);
+    }
+
     private void write2byteValue(int value) throws IOException {
         if (value > 0xFFFF) throw new IOException("Value too high: " + value);
-        out.write(value & 0xFF);
-        out.write((value >> 8) & 0xFF);
+        ensureRemaining(2);
+        buffer.putShort((short) value);
     }
 
     private void write3byteValue(int value) throws IOException {
         if (value > 0xFFFFFF) throw new IOException("Value too high: " + value);
-        out.write(value & 0xFF);
-        out.write((value >> 8) & 0xFF);
-        out.write((value >> 16) & 0xFF);
+        ensureRemaining(3);
+        buffer.putShort((short) value);
+        buffer.put((byte) (value >> 16));
     }
 
     private void write4byteValue(int value) throws IOException {
-        out.write(value & 0xFF);
-        out.write((value >> 8) & 0xFF);
-        out.write((value >> 16) & 0xFF);
-        out.write((value >> 24) & 0xFF);
+        ensureRemaining(4);
+        buffer.putInt(value);
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
     }
 
-    private void writeFloat(float value) throws IOException {
-        write4byteValue(Float.floatToIntBits(value));
+    /**
+     * Writes the buffered bytes in one bulk-write to the underlying stream
+     */
+    private void flush() throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        flushedCount += buffer.position();
+        buffer.clear();
     }
 
-    private void writeNormalizedSignedByteValue(float value) throws IOException {
+    private long getCount() {
+        return flushedCount + buffer.position();
+    }
+
+    private static int normalizedSignedByteValue(float value) {
         byte normalized = (byte) (value * 0x80 - 0.5);
-        out.write(normalized & 0xFF);
+        return normalized & 0xFF;
     }
 
-    private void writeNormalizedUnsignedByteValue(float value) throws IOException {
+    private static int normalizedUnsignedByteValue(float value) {
         int normalized = (int) (value * 0xFF);
-        out.write(normalized & 0xFF);
+        return normalized & 0xFF;
+    }
+
+    private static int fixedPointUvValue(float value) {
+        return Math.round(value * COMPACT_UV_SCALE) & 0xFFFF;
+    }
+
+    private static int fixedPointPositionValue(float value) {
+        return Math.round(value * COMPACT_POSITION_SCALE);
+    }
+
+    /**
+     * Encodes the (normalized) vector as two signed normalized bytes using an octahedral mapping
+     */
+    private static int octahedralNormalValue(float x, float y, float z) {
+        float l1 = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if (!(l1 > 0f)) return 0;
+
+        float ox = x / l1, oy = y / l1;
+        if (z < 0) {
+            float fx = (1 - Math.abs(oy)) * (ox >= 0 ? 1 : -1);
+            float fy = (1 - Math.abs(ox)) * (oy >= 0 ? 1 : -1);
+            ox = fx; oy = fy;
+        }
+
+        return (Math.round(ox * 127) & 0xFF) | (Math.round(oy * 127) & 0xFF) << 8;
     }
 
     private void writeString(String value) throws IOException {
-        out.write(value.getBytes(StandardCharsets.US_ASCII));
-        out.write(0);
+        for (byte b : value.getBytes(StandardCharsets.US_ASCII)) writeByte(b);
+        writeByte(0);
     }
 
     private void calculateSurfaceNormal(
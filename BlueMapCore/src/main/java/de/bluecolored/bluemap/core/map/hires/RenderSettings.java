@@ -123,4 +123,12 @@ default Predicate<Vector2i> getRenderBoundariesCellFilter(Grid grid) {
 
     boolean isSaveHiresLayer();
 
+    /**
+     * If adjacent coplanar full-block faces with the same texture, color and light should be merged into bigger faces
+     * before the hires-tiles are saved.
+     */
+    default boolean isMergeHiresFaces() {
+        return false;
+    }
+
 }
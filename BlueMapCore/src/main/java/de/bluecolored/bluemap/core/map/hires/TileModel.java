@@ -25,11 +25,11 @@
 package de.bluecolored.bluemap.core.map.hires;
 
 import com.flowpowered.math.TrigMath;
-import de.bluecolored.bluemap.core.util.InstancePool;
-import de.bluecolored.bluemap.core.util.MergeSort;
 import de.bluecolored.bluemap.core.util.math.MatrixM3f;
 import de.bluecolored.bluemap.core.util.math.MatrixM4f;
 
+import java.util.Arrays;
+
 public class TileModel {
     private static final double GROW_MULTIPLIER = 1.5;
 
@@ -43,21 +43,33 @@ public class TileModel {
             FI_BLOCKLIGHT =     1       ,
             FI_MATERIAL_INDEX = 1       ;
 
-    private static final InstancePool<TileModel> INSTANCE_POOL = new InstancePool<>(
-            () -> new TileModel(100),
-            TileModel::clear
-    );
+    static final int INITIAL_CAPACITY = 100;
+
+    private static final TileModelPool POOL = new TileModelPool();
 
     private int capacity;
     int size;
 
+    // statistics for the TileModelPool
+    int highWaterSize, growCount;
+
     float[] position;
     float[] color, uv, ao;
     byte[] sunlight, blocklight;
-    int[] materialIndex, materialIndexSort, materialIndexSortSupport;
+    int[] materialIndex, materialIndexSort;
+
+    // second set of attribute-arrays that the faces are scattered into when sorting
+    private float[] sortPosition, sortColor, sortUv, sortAo;
+    private byte[] sortSunlight, sortBlocklight;
+    private int[] sortMaterialIndex;
+    private int[] materialCounts = new int[0];
+
+    // (material, start, count) for each material-group, valid if the model has been sorted and not changed since
+    int[] materialGroups = new int[0];
+    int materialGroupCount = -1;
 
-    float[] indexedPosition;
-    int[] positionIndex;
+    // buffers for the vertex-welding of the PRBMWriter, kept here so they are reused with the pooled model
+    int[] indexedVertices, vertexIndex, vertexIndexTable;
 
     public TileModel(int initialCapacity) {
         if (initialCapacity < 0) throw new IllegalArgumentException("initialCapacity is negative");
@@ -70,6 +82,7 @@ public int size() {
     }
 
     public int add(int count) {
+        materialGroupCount = -1;
         ensureCapacity(count);
         int start = this.size;
         this.size += count;
@@ -156,6 +169,7 @@ public TileModel setBlocklight(int face, int bl) {
     }
 
     public TileModel setMaterialIndex(int face, int m) {
+        materialGroupCount = -1;
         materialIndex[face * FI_MATERIAL_INDEX] = m;
         return this;
     }
@@ -339,11 +353,13 @@ public TileModel transform(
     }
 
     public TileModel reset(int size) {
+        this.materialGroupCount = -1;
         this.size = size;
         return this;
     }
 
     public TileModel clear() {
+        this.materialGroupCount = -1;
         this.size = 0;
         return this;
     }
@@ -357,6 +373,7 @@ private void ensureCapacity(int count) {
 
             int newCapacity = (int) (capacity * GROW_MULTIPLIER) + count;
             setCapacity(newCapacity);
+            growCount++;
 
             System.arraycopy(_position,         0, position,        0, size * FI_POSITION);
             System.arraycopy(_uv,               0, uv,              0, size * FI_UV);
@@ -383,98 +400,170 @@ private void setCapacity(int capacity) {
         materialIndex = new int     [capacity * FI_MATERIAL_INDEX];
 
         materialIndexSort = new int[materialIndex.length];
-        materialIndexSortSupport = new int [materialIndex.length];
     }
 
+    /**
+     * Sorts the faces by their material-index using a counting-sort:
+     * the faces are counted per material and then scattered once into their final position.<br>
+     * Also records the resulting material-groups for the {@link PRBMWriter}.
+     */
     public void sort() {
-        if (size <= 1) return; // nothing to sort
+        if (size == 0) {
+            materialGroupCount = 0;
+            return;
+        }
 
-        // initialize material-index-sort
-        for (int i = 0; i < size; i++) {
-            materialIndexSort[i] = i;
-            materialIndexSortSupport[i] = i;
+        // count faces per material
+        int minMaterial = Integer.MAX_VALUE, maxMaterial = Integer.MIN_VALUE, m, i;
+        for (i = 0; i < size; i++) {
+            m = materialIndex[i];
+            if (m < minMaterial) minMaterial = m;
+            if (m > maxMaterial) maxMaterial = m;
         }
 
-        // sort
-        MergeSort.mergeSortInt(materialIndexSort, 0, size, this::compareMaterialIndex, materialIndexSortSupport);
+        int materialRange = maxMaterial - minMaterial + 1;
+        if (materialCounts.length < materialRange) materialCounts = new int[materialRange];
+        int[] counts = materialCounts;
+        Arrays.fill(counts, 0, materialRange, 0);
+        for (i = 0; i < size; i++) counts[materialIndex[i] - minMaterial]++;
 
-        // move
-        int s, c;
-        for (int i = 0; i < size; i++) {
-            s = materialIndexSort[i]; c = 0;
-            while (s < i) {
-                s = materialIndexSort[s];
+        // record groups and turn the counts into start-offsets
+        int groupCount = 0;
+        for (m = 0; m < materialRange; m++) if (counts[m] > 0) groupCount++;
+        if (materialGroups.length < groupCount * 3) materialGroups = new int[groupCount * 3];
 
-                // should never happen, just making absolutely sure this can't get stuck in an endless loop
-                if (c++ > size) throw new IllegalStateException();
-            }
-            swap(i, s);
+        int offset = 0, count, g = 0;
+        for (m = 0; m < materialRange; m++) {
+            count = counts[m];
+            if (count == 0) continue;
+
+            materialGroups[g++] = m + minMaterial;
+            materialGroups[g++] = offset;
+            materialGroups[g++] = count;
+
+            counts[m] = offset;
+            offset += count;
         }
-    }
 
-    private int compareMaterialIndex(int i1, int i2) {
-        return Integer.compare(materialIndex[i1], materialIndex[i2]);
+        // calculate target-positions (stable)
+        int[] target = materialIndexSort;
+        boolean sorted = true;
+        for (i = 0; i < size; i++) {
+            target[i] = counts[materialIndex[i] - minMaterial]++;
+            if (target[i] != i) sorted = false;
+        }
+
+        if (!sorted) scatter(target);
+
+        materialGroupCount = groupCount;
     }
 
-    private void swap(int face1, int face2) {
-        int i, if1, if2, vi;
-        float vf;
-        byte vb;
-
-        //swap positions
-        if1 = face1 * FI_POSITION;
-        if2 = face2 * FI_POSITION;
-        for (i = 0; i < FI_POSITION; i++){
-            vf = position[if1 + i];
-            position[if1 + i] = position[if2 + i];
-            position[if2 + i] = vf;
-        }
+    private void scatter(int[] target) {
+        if (sortPosition == null || sortPosition.length < position.length) {
+            sortPosition =      new float   [position.length];
+            sortUv =            new float   [uv.length];
+            sortAo =            new float   [ao.length];
 
-        //swap uv
-        if1 = face1 * FI_UV;
-        if2 = face2 * FI_UV;
-        for (i = 0; i < FI_UV; i++){
-            vf = uv[if1 + i];
-            uv[if1 + i] = uv[if2 + i];
-            uv[if2 + i] = vf;
+            sortColor =         new float   [color.length];
+            sortSunlight =      new byte    [sunlight.length];
+            sortBlocklight =    new byte    [blocklight.length];
+            sortMaterialIndex = new int     [materialIndex.length];
         }
 
-        //swap ao
-        if1 = face1 * FI_AO;
-        if2 = face2 * FI_AO;
-        for (i = 0; i < FI_AO; i++){
-            vf = ao[if1 + i];
-            ao[if1 + i] = ao[if2 + i];
-            ao[if2 + i] = vf;
+        int t;
+        for (int i = 0; i < size; i++) {
+            t = target[i];
+            System.arraycopy(position,      i * FI_POSITION,    sortPosition,   t * FI_POSITION,    FI_POSITION);
+            System.arraycopy(uv,            i * FI_UV,          sortUv,         t * FI_UV,          FI_UV);
+            System.arraycopy(ao,            i * FI_AO,          sortAo,         t * FI_AO,          FI_AO);
+            System.arraycopy(color,         i * FI_COLOR,       sortColor,      t * FI_COLOR,       FI_COLOR);
+            sortSunlight[t] = sunlight[i];              // assuming FI_SUNLIGHT = 1
+            sortBlocklight[t] = blocklight[i];          // assuming FI_BLOCKLIGHT = 1
+            sortMaterialIndex[t] = materialIndex[i];    // assuming FI_MATERIAL_INDEX = 1
         }
 
-        //swap color
-        if1 = face1 * FI_COLOR;
-        if2 = face2 * FI_COLOR;
-        for (i = 0; i < FI_COLOR; i++){
-            vf = color[if1 + i];
-            color[if1 + i] = color[if2 + i];
-            color[if2 + i] = vf;
+        // swap the arrays
+        float[] vf;
+        byte[] vb;
+        int[] vi;
+
+        vf = position; position = sortPosition; sortPosition = vf;
+        vf = uv; uv = sortUv; sortUv = vf;
+        vf = ao; ao = sortAo; sortAo = vf;
+        vf = color; color = sortColor; sortColor = vf;
+        vb = sunlight; sunlight = sortSunlight; sortSunlight = vb;
+        vb = blocklight; blocklight = sortBlocklight; sortBlocklight = vb;
+        vi = materialIndex; materialIndex = sortMaterialIndex; sortMaterialIndex = vi;
+    }
+
+    /**
+     * Merges adjacent coplanar full-block faces with the same attributes into bigger faces.<br>
+     * This changes the count and order of the faces, so it should be done before {@link #sort()}.
+     */
+    public void mergeFaces() {
+        TileModelFaceMerger.merge(this);
+    }
+
+    void copyFace(int from, int to) {
+        materialGroupCount = -1;
+        System.arraycopy(position,      from * FI_POSITION,         position,       to * FI_POSITION,       FI_POSITION);
+        System.arraycopy(uv,            from * FI_UV,               uv,             to * FI_UV,             FI_UV);
+        System.arraycopy(ao,            from * FI_AO,               ao,             to * FI_AO,             FI_AO);
+
+        System.arraycopy(color,         from * FI_COLOR,            color,          to * FI_COLOR,          FI_COLOR);
+        System.arraycopy(sunlight,      from * FI_SUNLIGHT,         sunlight,       to * FI_SUNLIGHT,       FI_SUNLIGHT);
+        System.arraycopy(blocklight,    from * FI_BLOCKLIGHT,       blocklight,     to * FI_BLOCKLIGHT,     FI_BLOCKLIGHT);
+        System.arraycopy(materialIndex, from * FI_MATERIAL_INDEX,   materialIndex,  to * FI_MATERIAL_INDEX, FI_MATERIAL_INDEX);
+    }
+
+    /**
+     * Shrinks (or grows) all buffers of this model to the given capacity and drops all secondary buffers (for sorting
+     * and writing). This also clears the model.
+     */
+    void trim(int capacity) {
+        setCapacity(capacity);
+
+        sortPosition = sortColor = sortUv = sortAo = null;
+        sortSunlight = sortBlocklight = null;
+        sortMaterialIndex = null;
+        materialCounts = new int[0];
+        materialGroups = new int[0];
+
+        indexedVertices = vertexIndex = vertexIndexTable = null;
+
+        clear();
+    }
+
+    /**
+     * An estimate of the bytes that are used by all buffers of this model
+     */
+    long getRetainedBytes() {
+        long bytes = 0;
+
+        bytes += 4L * (position.length + uv.length + ao.length + color.length);
+        bytes += sunlight.length + blocklight.length;
+        bytes += 4L * (materialIndex.length + materialIndexSort.length);
+
+        if (sortPosition != null) {
+            bytes += 4L * (sortPosition.length + sortUv.length + sortAo.length + sortColor.length);
+            bytes += sortSunlight.length + sortBlocklight.length;
+            bytes += 4L * sortMaterialIndex.length;
         }
+        bytes += 4L * (materialCounts.length + materialGroups.length);
 
-        //swap sunlight (assuming FI_SUNLIGHT = 1)
-        vb = sunlight[face1];
-        sunlight[face1] = sunlight[face2];
-        sunlight[face2] = vb;
+        if (indexedVertices != null) bytes += 4L * indexedVertices.length;
+        if (vertexIndex != null) bytes += 4L * vertexIndex.length;
+        if (vertexIndexTable != null) bytes += 4L * vertexIndexTable.length;
 
-        //swap blocklight (assuming FI_BLOCKLIGHT = 1)
-        vb = blocklight[face1];
-        blocklight[face1] = blocklight[face2];
-        blocklight[face2] = vb;
+        return bytes;
+    }
 
-        //swap material-index (assuming FI_MATERIAL_INDEX = 1)
-        vi = materialIndex[face1];
-        materialIndex[face1] = materialIndex[face2];
-        materialIndex[face2] = vi;
+    int getCapacity() {
+        return capacity;
     }
 
-    public static InstancePool<TileModel> instancePool() {
-        return INSTANCE_POOL;
+    public static TileModelPool pool() {
+        return POOL;
     }
 
 }
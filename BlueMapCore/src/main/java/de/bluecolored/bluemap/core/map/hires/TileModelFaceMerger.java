@@ -0,0 +1,333 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges adjacent, coplanar full-block faces (quads made from two triangles) of a {@link TileModel} that share
+ * the same material, color, light and ambient-occlusion into bigger quads.<br>
+ * <br>
+ * The uvs of merged quads repeat the texture once per block. To let the webapp-shader know that it needs
+ * to wrap the uvs, the u-coordinate of all vertices of a merged quad is offset by {@link #UV_WRAP_FLAG_OFFSET}.
+ */
+class TileModelFaceMerger {
+
+    /**
+     * Merged quads have their u-coordinate offset by this value, this flags them for uv-wrapping in the webapp
+     */
+    static final float UV_WRAP_FLAG_OFFSET = 2;
+
+    /**
+     * The maximum size of a merged quad in blocks (in each direction), this keeps the uvs in a small range
+     */
+    static final int MAX_MERGE_SIZE = 8;
+
+    private final TileModel model;
+    private final Map<QuadKey, List<Quad>> groups = new HashMap<>();
+    private boolean[] removed;
+
+    private TileModelFaceMerger(TileModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Merges the faces of the given model, this changes the order and count of the faces in the model
+     */
+    static void merge(TileModel model) {
+        if (model.size < 4) return;
+        new TileModelFaceMerger(model).merge();
+    }
+
+    private void merge() {
+        // find all faces that are full-block quads
+        for (int face = 0; face < model.size - 1;) {
+            Quad quad = createQuad(face);
+            if (quad != null) {
+                groups.computeIfAbsent(quad.key, k -> new ArrayList<>()).add(quad);
+                face += 2;
+            } else {
+                face++;
+            }
+        }
+
+        removed = new boolean[model.size];
+        boolean anyMerged = false;
+        for (List<Quad> group : groups.values()) {
+            if (group.size() > 1) anyMerged |= mergeGroup(group);
+        }
+
+        if (anyMerged) removeFaces();
+    }
+
+    /**
+     * Greedy meshing of all quads that are on the same plane and have the same attributes
+     */
+    private boolean mergeGroup(List<Quad> group) {
+        Map<Long, Quad> cells = new HashMap<>(group.size() * 2);
+        for (Quad quad : group) cells.put(cellKey(quad.u, quad.v), quad);
+
+        group.sort((q1, q2) -> q1.v != q2.v ? Integer.compare(q1.v, q2.v) : Integer.compare(q1.u, q2.u));
+
+        boolean anyMerged = false;
+        for (Quad quad : group) {
+            if (quad.used) continue;
+
+            int width = 1;
+            while (width < MAX_MERGE_SIZE && isFree(cells, quad.u + width, quad.v)) width++;
+
+            int height = 1;
+            rows: while (height < MAX_MERGE_SIZE) {
+                for (int du = 0; du < width; du++) {
+                    if (!isFree(cells, quad.u + du, quad.v + height)) break rows;
+                }
+                height++;
+            }
+
+            for (int dv = 0; dv < height; dv++) {
+                for (int du = 0; du < width; du++) {
+                    Quad q = cells.get(cellKey(quad.u + du, quad.v + dv));
+                    q.used = true;
+                    if (q != quad) {
+                        removed[q.face] = true;
+                        removed[q.face + 1] = true;
+                    }
+                }
+            }
+
+            if (width > 1 || height > 1) {
+                writeMergedQuad(quad, width, height);
+                anyMerged = true;
+            }
+        }
+
+        return anyMerged;
+    }
+
+    private boolean isFree(Map<Long, Quad> cells, int u, int v) {
+        Quad quad = cells.get(cellKey(u, v));
+        return quad != null && !quad.used;
+    }
+
+    private void writeMergedQuad(Quad quad, int width, int height) {
+        QuadKey key = quad.key;
+        int axis = key.axis, uAxis = (axis + 1) % 3, vAxis = (axis + 2) % 3;
+
+        float[] corners = new float[4 * 3];
+        float[] uvs = new float[4 * 2];
+        float minU = Float.POSITIVE_INFINITY, minV = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < 4; c++) {
+            int lu = (key.cornerPattern >> (c * 2)) & 1;
+            int lv = (key.cornerPattern >> (c * 2 + 1)) & 1;
+
+            corners[c * 3 + axis] = quad.plane;
+            corners[c * 3 + uAxis] = quad.u + lu * width;
+            corners[c * 3 + vAxis] = quad.v + lv * height;
+
+            float tu = key.uvOrigin[0] + key.uvAxisU[0] * lu * width + key.uvAxisV[0] * lv * height;
+            float tv = key.uvOrigin[1] + key.uvAxisU[1] * lu * width + key.uvAxisV[1] * lv * height;
+            uvs[c * 2] = tu;
+            uvs[c * 2 + 1] = tv;
+            minU = Math.min(minU, tu);
+            minV = Math.min(minV, tv);
+        }
+
+        // move the uvs into the positive range (by whole textures, so the wrapped result stays the same) and flag them
+        float shiftU = UV_WRAP_FLAG_OFFSET - (float) Math.floor(minU);
+        float shiftV = - (float) Math.floor(minV);
+        for (int c = 0; c < 4; c++) {
+            uvs[c * 2] += shiftU;
+            uvs[c * 2 + 1] += shiftV;
+        }
+
+        int face1 = quad.face, face2 = face1 + 1;
+        model.setPositions(face1,
+                corners[0], corners[1], corners[2],
+                corners[3], corners[4], corners[5],
+                corners[6], corners[7], corners[8]
+        );
+        model.setPositions(face2,
+                corners[0], corners[1], corners[2],
+                corners[6], corners[7], corners[8],
+                corners[9], corners[10], corners[11]
+        );
+        model.setUvs(face1,
+                uvs[0], uvs[1],
+                uvs[2], uvs[3],
+                uvs[4], uvs[5]
+        );
+        model.setUvs(face2,
+                uvs[0], uvs[1],
+                uvs[4], uvs[5],
+                uvs[6], uvs[7]
+        );
+    }
+
+    /**
+     * Removes all faces that have been merged into other faces, keeping the order of the remaining faces
+     */
+    private void removeFaces() {
+        int target = 0;
+        for (int face = 0; face < model.size; face++) {
+            if (removed[face]) continue;
+            if (target != face) model.copyFace(face, target);
+            target++;
+        }
+        model.reset(target);
+    }
+
+    /**
+     * Tests if the face and the following face form a full-block quad that could be merged,
+     * returns null if not
+     */
+    private Quad createQuad(int face1) {
+        int face2 = face1 + 1;
+
+        // same material, color, light and uniform ao
+        if (model.materialIndex[face1] != model.materialIndex[face2]) return null;
+        if (model.sunlight[face1] != model.sunlight[face2]) return null;
+        if (model.blocklight[face1] != model.blocklight[face2]) return null;
+        for (int i = 0; i < TileModel.FI_COLOR; i++) {
+            if (model.color[face1 * TileModel.FI_COLOR + i] != model.color[face2 * TileModel.FI_COLOR + i]) return null;
+        }
+        float ao = model.ao[face1 * TileModel.FI_AO];
+        for (int i = 0; i < TileModel.FI_AO; i++) {
+            if (model.ao[face1 * TileModel.FI_AO + i] != ao || model.ao[face2 * TileModel.FI_AO + i] != ao) return null;
+        }
+
+        // second triangle needs to be (c0, c2, c3) of the quad
+        float[] position = model.position;
+        int p1 = face1 * TileModel.FI_POSITION, p2 = face2 * TileModel.FI_POSITION;
+        for (int i = 0; i < 3; i++) {
+            if (position[p2 + i] != position[p1 + i]) return null;
+            if (position[p2 + 3 + i] != position[p1 + 6 + i]) return null;
+        }
+
+        float[] corners = {
+                position[p1    ], position[p1 + 1], position[p1 + 2],
+                position[p1 + 3], position[p1 + 4], position[p1 + 5],
+                position[p1 + 6], position[p1 + 7], position[p1 + 8],
+                position[p2 + 6], position[p2 + 7], position[p2 + 8]
+        };
+
+        float[] uv = model.uv;
+        int u1 = face1 * TileModel.FI_UV, u2 = face2 * TileModel.FI_UV;
+        if (uv[u2] != uv[u1] || uv[u2 + 1] != uv[u1 + 1] || uv[u2 + 2] != uv[u1 + 4] || uv[u2 + 3] != uv[u1 + 5]) return null;
+        float[] uvs = {
+                uv[u1    ], uv[u1 + 1],
+                uv[u1 + 2], uv[u1 + 3],
+                uv[u1 + 4], uv[u1 + 5],
+                uv[u2 + 4], uv[u2 + 5]
+        };
+
+        // find the axis the quad is perpendicular to
+        int axis = -1;
+        for (int a = 0; a < 3; a++) {
+            if (corners[a] == corners[3 + a] && corners[a] == corners[6 + a] && corners[a] == corners[9 + a]) {
+                axis = a;
+                break;
+            }
+        }
+        if (axis == -1) return null;
+        int uAxis = (axis + 1) % 3, vAxis = (axis + 2) % 3;
+
+        // the quad needs to be exactly one block, aligned to the block-grid
+        float minU = Math.min(Math.min(corners[uAxis], corners[3 + uAxis]), Math.min(corners[6 + uAxis], corners[9 + uAxis]));
+        float minV = Math.min(Math.min(corners[vAxis], corners[3 + vAxis]), Math.min(corners[6 + vAxis], corners[9 + vAxis]));
+        if (minU != Math.floor(minU) || minV != Math.floor(minV)) return null;
+        if (Math.abs(minU) > 1 << 24 || Math.abs(minV) > 1 << 24) return null;
+
+        int cornerPattern = 0, cornersSeen = 0;
+        int[] cornerIndex = new int[4];
+        for (int c = 0; c < 4; c++) {
+            float du = corners[c * 3 + uAxis] - minU, dv = corners[c * 3 + vAxis] - minV;
+            if ((du != 0 && du != 1) || (dv != 0 && dv != 1)) return null;
+            int lu = (int) du, lv = (int) dv;
+            int local = lu | lv << 1;
+            if ((cornersSeen & 1 << local) != 0) return null;
+            cornersSeen |= 1 << local;
+            cornerIndex[local] = c;
+            cornerPattern |= local << (c * 2);
+        }
+
+        // the uvs need to map the full texture onto the quad, only rotated or mirrored
+        int c00 = cornerIndex[0], c10 = cornerIndex[1], c01 = cornerIndex[2], c11 = cornerIndex[3];
+        float[] uvOrigin = { uvs[c00 * 2], uvs[c00 * 2 + 1] };
+        float[] uvAxisU = { uvs[c10 * 2] - uvOrigin[0], uvs[c10 * 2 + 1] - uvOrigin[1] };
+        float[] uvAxisV = { uvs[c01 * 2] - uvOrigin[0], uvs[c01 * 2 + 1] - uvOrigin[1] };
+        if (uvs[c11 * 2] != uvOrigin[0] + uvAxisU[0] + uvAxisV[0]) return null;
+        if (uvs[c11 * 2 + 1] != uvOrigin[1] + uvAxisU[1] + uvAxisV[1]) return null;
+        if (!isUnitAxis(uvAxisU) || !isUnitAxis(uvAxisV) || uvAxisU[0] * uvAxisV[0] + uvAxisU[1] * uvAxisV[1] != 0) return null;
+        if (uvOrigin[0] != 0 && uvOrigin[0] != 1 || uvOrigin[1] != 0 && uvOrigin[1] != 1) return null;
+
+        QuadKey key = new QuadKey(
+                axis, corners[axis], cornerPattern,
+                uvOrigin, uvAxisU, uvAxisV,
+                model.materialIndex[face1],
+                model.color[face1 * TileModel.FI_COLOR],
+                model.color[face1 * TileModel.FI_COLOR + 1],
+                model.color[face1 * TileModel.FI_COLOR + 2],
+                ao, model.sunlight[face1], model.blocklight[face1]
+        );
+
+        return new Quad(key, face1, corners[axis], (int) minU, (int) minV);
+    }
+
+    private static boolean isUnitAxis(float[] v) {
+        return (Math.abs(v[0]) == 1 && v[1] == 0) || (v[0] == 0 && Math.abs(v[1]) == 1);
+    }
+
+    private static long cellKey(int u, int v) {
+        return (long) u << 32 | (v & 0xFFFFFFFFL);
+    }
+
+    @RequiredArgsConstructor
+    private static class Quad {
+        private final QuadKey key;
+        private final int face;
+        private final float plane;
+        private final int u, v;
+        private boolean used;
+    }
+
+    @EqualsAndHashCode(cacheStrategy = EqualsAndHashCode.CacheStrategy.LAZY)
+    @RequiredArgsConstructor
+    private static class QuadKey {
+        private final int axis;
+        private final float plane;
+        private final int cornerPattern;
+        private final float[] uvOrigin, uvAxisU, uvAxisV;
+        private final int materialIndex;
+        private final float r, g, b, ao;
+        private final byte sunlight, blocklight;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import de.bluecolored.bluemap.api.debug.DebugDump;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Manages the reuse of {@link TileModel}s between rendered tiles.<br>
+ * Each thread keeps (at most) one model for its next tile. After a tile that needed a lot more faces than the recent
+ * tiles the model is trimmed back down, and the models that are kept are limited by a global byte-budget, so a few
+ * huge tiles can not pin a lot of memory for the lifetime of the process.
+ */
+@DebugDump
+public class TileModelPool {
+
+    public static final long DEFAULT_BYTE_BUDGET = 256L * 1024 * 1024;
+
+    /**
+     * The factor by which the remembered high-water-mark decays with each tile
+     */
+    private static final double HIGH_WATER_DECAY = 0.9;
+
+    /**
+     * A model is trimmed if its capacity is bigger than this factor times its high-water-mark
+     */
+    private static final double TRIM_THRESHOLD = 2.0;
+
+    private final ThreadLocal<TileModel> threadModel = new ThreadLocal<>();
+    private final Map<Thread, Long> retainedBytesPerThread = new ConcurrentHashMap<>();
+
+    private volatile long byteBudget = DEFAULT_BYTE_BUDGET;
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder grows = new LongAdder();
+    private final LongAdder trims = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    /**
+     * Returns the model kept by the current thread or creates a new one
+     */
+    public TileModel claim() {
+        TileModel model = threadModel.get();
+        if (model != null) {
+            threadModel.remove();
+            retainedBytesPerThread.remove(Thread.currentThread());
+            return model;
+        }
+
+        allocations.increment();
+        return new TileModel(TileModel.INITIAL_CAPACITY);
+    }
+
+    /**
+     * Gives the model back to the pool, the model must not be used afterwards.
+     */
+    public void recycle(TileModel model) {
+        grows.add(model.growCount);
+        model.growCount = 0;
+
+        // trim the model back if this was an outlier compared to the recent tiles
+        model.highWaterSize = Math.max(model.size, (int) (model.highWaterSize * HIGH_WATER_DECAY));
+        int targetCapacity = Math.max((int) (model.highWaterSize * 1.5), TileModel.INITIAL_CAPACITY);
+        if (model.getCapacity() > targetCapacity * TRIM_THRESHOLD) {
+            model.trim(targetCapacity);
+            trims.increment();
+        } else {
+            model.clear();
+        }
+
+        // only keep one model per thread and stay in budget
+        long bytes = model.getRetainedBytes();
+        if (threadModel.get() != null || getRetainedBytes() + bytes > byteBudget) {
+            discards.increment();
+            return;
+        }
+
+        threadModel.set(model);
+        retainedBytesPerThread.put(Thread.currentThread(), bytes);
+    }
+
+    /**
+     * The maximum amount of bytes that the models kept by this pool may use in total
+     */
+    public void setByteBudget(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    public long getByteBudget() {
+        return byteBudget;
+    }
+
+    /**
+     * The estimated amount of bytes that are currently used by the models kept in this pool
+     */
+    public long getRetainedBytes() {
+        // threads that are no longer running do not hold their models anymore
+        retainedBytesPerThread.keySet().removeIf(thread -> !thread.isAlive());
+
+        long bytes = 0;
+        for (long b : retainedBytesPerThread.values()) bytes += b;
+        return bytes;
+    }
+
+    /**
+     * The number of models that have been newly created
+     */
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    /**
+     * The number of times a model needed to grow its buffers
+     */
+    public long getGrowCount() {
+        return grows.sum();
+    }
+
+    /**
+     * The number of times a model has been trimmed after an outlier-tile
+     */
+    public long getTrimCount() {
+        return trims.sum();
+    }
+
+    /**
+     * The number of models that have been discarded instead of being kept, because the budget was exceeded
+     */
+    public long getDiscardCount() {
+        return discards.sum();
+    }
+
+}
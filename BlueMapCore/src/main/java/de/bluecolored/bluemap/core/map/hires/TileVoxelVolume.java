@@ -0,0 +1,284 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import com.flowpowered.math.vector.Vector3i;
+import de.bluecolored.bluemap.core.resources.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.util.InstancePool;
+import de.bluecolored.bluemap.core.world.Biome;
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.World;
+
+import java.util.Arrays;
+
+/**
+ * A dense buffer of all block-state ids, light-levels and biomes that are needed to render one hires-tile.<br>
+ * The volume covers the rendered area plus a {@link #MARGIN} on all sides, so all neighbor-lookups of the
+ * model-builders (culling, ambient-occlusion and the biome-blending for tints) can be served from plain arrays
+ * instead of going through the world and chunk for each access.<br>
+ * <br>
+ * The render-edges of the {@link RenderSettings} are already applied when the volume is filled.
+ */
+public class TileVoxelVolume {
+
+    /**
+     * One block for direct neighbors and the biome-blend radius of the
+     * {@link de.bluecolored.bluemap.core.resources.BlockColorCalculatorFactory}
+     */
+    public static final int MARGIN = 2;
+
+    private static final InstancePool<TileVoxelVolume> INSTANCE_POOL = new InstancePool<>(
+            TileVoxelVolume::new,
+            TileVoxelVolume::clear
+    );
+
+    private World world;
+    private ResourcePack resourcePack;
+
+    private int minX, minY, minZ;
+    private int sizeX, sizeY, sizeZ;
+
+    private Chunk[] chunks = new Chunk[0];
+    private int[] blockStates = new int[0];
+    private byte[] sunLight = new byte[0];
+    private byte[] blockLight = new byte[0];
+    private Biome[] biomes = new Biome[0];
+
+    private final BiomeTintField[] tintFields = new BiomeTintField[BiomeTintField.Tint.values().length];
+
+    private final LightData tempLight = new LightData(0, 0);
+
+    public TileVoxelVolume init(World world, ResourcePack resourcePack, RenderSettings renderSettings, Vector3i min, Vector3i max) {
+        if (this.resourcePack != resourcePack) Arrays.fill(tintFields, null);
+        this.world = world;
+        this.resourcePack = resourcePack;
+
+        this.minX = min.getX() - MARGIN;
+        this.minZ = min.getZ() - MARGIN;
+        this.sizeX = Math.max(max.getX() - min.getX() + 1 + MARGIN * 2, 0);
+        this.sizeZ = Math.max(max.getZ() - min.getZ() + 1 + MARGIN * 2, 0);
+
+        // load chunks and find the height of the volume
+        int columnCount = sizeX * sizeZ;
+        if (chunks.length < columnCount) chunks = new Chunk[columnCount];
+
+        int chunkMinY = Integer.MAX_VALUE, chunkMaxY = Integer.MIN_VALUE;
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                Chunk chunk = world.getChunkAtBlock(minX + x, minZ + z);
+                chunks[x * sizeZ + z] = chunk;
+                chunkMinY = Math.min(chunkMinY, chunk.getMinY(minX + x, minZ + z));
+                chunkMaxY = Math.max(chunkMaxY, chunk.getMaxY(minX + x, minZ + z));
+            }
+        }
+
+        this.minY = Math.max(min.getY(), chunkMinY) - MARGIN;
+        int maxY = Math.min(max.getY(), chunkMaxY) + MARGIN;
+        this.sizeY = Math.max(maxY - minY + 1, 0);
+
+        int volume = columnCount * sizeY;
+        if (blockStates.length < volume) {
+            blockStates = new int[volume];
+            sunLight = new byte[volume];
+            blockLight = new byte[volume];
+            biomes = new Biome[volume];
+        }
+
+        // fill
+        boolean renderEdges = renderSettings.isRenderEdges();
+        int edgeMinY = renderSettings.getMinPos().getY(), edgeMaxY = renderSettings.getMaxPos().getY();
+        int edgeSunLight = world.getDimensionType().hasSkylight() ? 16 : 0;
+        int airId = BlockState.AIR.getId();
+
+        int x, y, z, i = 0;
+        for (int cx = 0; cx < sizeX; cx++) {
+            x = minX + cx;
+            for (int cz = 0; cz < sizeZ; cz++, i += sizeY) {
+                z = minZ + cz;
+
+                Chunk chunk = chunks[cx * sizeZ + cz];
+
+                // block-states section by section, so uniform sections (e.g. air) can be filled in bulk
+                for (int cy = 0; cy < sizeY;) {
+                    y = minY + cy;
+                    int sectionEnd = Math.min(((y >> 4) + 1) * 16 - minY, sizeY);
+                    BlockState uniformState = chunk.getUniformSectionBlockState(y >> 4);
+                    if (uniformState != null) {
+                        Arrays.fill(blockStates, i + cy, i + sectionEnd, uniformState.getId());
+                        cy = sectionEnd;
+                    } else {
+                        for (; cy < sectionEnd; cy++)
+                            blockStates[i + cy] = chunk.getBlockState(x, minY + cy, z).getId();
+                    }
+                }
+
+                for (int cy = 0; cy < sizeY; cy++) {
+                    chunk.getLightData(x, minY + cy, z, tempLight);
+                    sunLight[i + cy] = (byte) tempLight.getSkyLight();
+                    blockLight[i + cy] = (byte) tempLight.getBlockLight();
+                }
+
+                // render-edges: everything outside the render-boundaries is lit air
+                if (renderEdges) {
+                    int insideFrom = 0, insideTo = 0;
+                    if (renderSettings.isInsideRenderBoundaries(x, z)) {
+                        insideFrom = (int) Math.min(Math.max((long) edgeMinY - minY, 0), sizeY);
+                        insideTo = (int) Math.min(Math.max((long) edgeMaxY - minY + 1, insideFrom), sizeY);
+                    }
+                    fillEdge(i, i + insideFrom, airId, edgeSunLight);
+                    fillEdge(i + insideTo, i + sizeY, airId, edgeSunLight);
+                }
+            }
+        }
+
+        Arrays.fill(biomes, 0, volume, null);
+
+        for (BiomeTintField tintField : tintFields) {
+            if (tintField != null) tintField.reset();
+        }
+
+        return this;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    private void fillEdge(int from, int to, int airId, int edgeSunLight) {
+        if (from >= to) return;
+        Arrays.fill(blockStates, from, to, airId);
+        Arrays.fill(sunLight, from, to, (byte) edgeSunLight);
+    }
+
+    /**
+     * Returns the index of the given block-position inside this volume or -1 if the volume does not contain that position
+     */
+    public int index(int x, int y, int z) {
+        x -= minX; y -= minY; z -= minZ;
+        if (
+                x < 0 || x >= sizeX ||
+                y < 0 || y >= sizeY ||
+                z < 0 || z >= sizeZ
+        ) return -1;
+        return (x * sizeZ + z) * sizeY + y;
+    }
+
+    public Chunk getChunk(int x, int z) {
+        x -= minX; z -= minZ;
+        if (x < 0 || x >= sizeX || z < 0 || z >= sizeZ)
+            return world.getChunkAtBlock(x + minX, z + minZ);
+        return chunks[x * sizeZ + z];
+    }
+
+    public int getBlockStateId(int index) {
+        return blockStates[index];
+    }
+
+    public BlockState getBlockState(int index) {
+        return BlockState.byId(blockStates[index]);
+    }
+
+    public int getSunLight(int index) {
+        return sunLight[index];
+    }
+
+    public int getBlockLight(int index) {
+        return blockLight[index];
+    }
+
+    public LightData getLightData(int index, LightData target) {
+        return target.set(sunLight[index], blockLight[index]);
+    }
+
+    public Biome getBiome(int index) {
+        Biome biome = biomes[index];
+        if (biome == null) {
+            int column = index / sizeY;
+            int x = minX + column / sizeZ;
+            int z = minZ + column % sizeZ;
+            int y = minY + index % sizeY;
+            biome = resourcePack.getBiome(chunks[column].getBiomeId(x, y, z));
+            biomes[index] = biome;
+        }
+        return biome;
+    }
+
+    /**
+     * Returns the {@link BiomeTintField} for the given tint, creating it with the given color-function if this volume
+     * has no field for that tint yet.<br>
+     * The fields are kept until the volume is recycled (a re-initialization only resets their calculated values),
+     * so the color-function must only depend on the resource-pack of this volume.
+     */
+    public BiomeTintField getTintField(BiomeTintField.Tint tint, BiomeTintField.BiomeColorFunction colorFunction) {
+        BiomeTintField tintField = tintFields[tint.ordinal()];
+        if (tintField == null) {
+            tintField = new BiomeTintField(this, colorFunction);
+            tintFields[tint.ordinal()] = tintField;
+        }
+        return tintField;
+    }
+
+    private TileVoxelVolume clear() {
+        this.world = null;
+        this.resourcePack = null;
+        Arrays.fill(chunks, null);
+
+        // the tint-fields reference the resource-pack through their color-functions and can grow quite big,
+        // so they are not kept while this volume is pooled
+        Arrays.fill(tintFields, null);
+        return this;
+    }
+
+    public static InstancePool<TileVoxelVolume> instancePool() {
+        return INSTANCE_POOL;
+    }
+
+}
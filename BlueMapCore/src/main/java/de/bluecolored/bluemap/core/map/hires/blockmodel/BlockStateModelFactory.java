@@ -118,6 +118,6 @@ private void renderModel(BlockNeighborhood<?> block, BlockState blockState, Bloc
         blockModel.initialize(modelStart);
     }
 
-    private final static BlockState WATERLOGGED_BLOCKSTATE = new BlockState("minecraft:water");
+    private final static BlockState WATERLOGGED_BLOCKSTATE = new BlockState("minecraft:water").intern();
 
 }
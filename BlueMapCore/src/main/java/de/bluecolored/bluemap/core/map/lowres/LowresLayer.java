@@ -29,6 +29,7 @@
 import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.util.Grid;
 import de.bluecolored.bluemap.core.util.Vector2iCache;
 import de.bluecolored.bluemap.core.util.math.Color;
@@ -36,31 +37,49 @@
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class LowresLayer {
 
     private static final Vector2iCache VECTOR_2_I_CACHE = new Vector2iCache();
 
+    /**
+     * The maximum number of tiles that are waiting to be saved in the background,
+     * if there are more, evicted tiles are saved directly by the evicting thread
+     */
+    private static final int MAX_PENDING_SAVES = 16;
+
     private final GridStorage storage;
+    private final GridStorage fallbackStorage;
+    private final boolean binaryFormat;
 
     private final Grid tileGrid;
     private final int lodFactor;
+    private final int compressionLevel;
 
     private final int lod;
     private final LoadingCache<Vector2i, LowresTile> tileCache;
     @Nullable private final LowresLayer nextLayer;
 
+    private final Map<Vector2i, LowresTile> pendingSaves = new ConcurrentHashMap<>();
+    private final ReadWriteLock pendingSavesLock = new ReentrantReadWriteLock();
+
     public LowresLayer(
-            GridStorage storage, Grid tileGrid, int lodFactor,
-            int lod, @Nullable LowresLayer nextLayer
+            GridStorage storage, GridStorage fallbackStorage, boolean binaryFormat,
+            Grid tileGrid, int lodFactor,
+            int lod, int compressionLevel, long cacheMemoryLimit, @Nullable LowresLayer nextLayer
     ) {
         this.storage = storage;
+        this.fallbackStorage = fallbackStorage;
+        this.binaryFormat = binaryFormat;
 
         this.tileGrid = tileGrid;
         this.lodFactor = lodFactor;
+        this.compressionLevel = compressionLevel;
 
         this.lod = lod;
         this.nextLayer = nextLayer;
@@ -74,29 +93,66 @@ public LowresLayer(
 
         this.tileCache = Caffeine.newBuilder()
                 .executor(BlueMap.THREAD_POOL)
-                .scheduler(Scheduler.systemScheduler())
-                .expireAfterAccess(10, TimeUnit.SECONDS)
-                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .maximumWeight(cacheMemoryLimit)
+                .weigher((Vector2i key, LowresTile tile) -> (int) Math.min(tile.getMemorySize(), Integer.MAX_VALUE))
                 .writer(new CacheWriter<Vector2i, LowresTile>() {
                     @Override
                     public void write(@NonNull Vector2i key, @NonNull LowresTile value) {}
 
                     @Override
                     public void delete(@NonNull Vector2i key, @Nullable LowresTile value, @NonNull RemovalCause cause) {
-                        saveTile(key, value);
+                        if (value != null && value.isDirty()) scheduleSave(key, value);
                     }
                 })
                 .build(tileWeakInstanceCache::get);
     }
 
+    /**
+     * Evicts all tiles from the cache and saves all modified tiles, including the ones that are currently
+     * waiting to be saved in the background.<br>
+     * Returns once all of them are written.
+     */
     public void save() {
         tileCache.invalidateAll();
         tileCache.cleanUp();
+
+        for (Vector2i tilePos : pendingSaves.keySet()) {
+            LowresTile tile = pendingSaves.remove(tilePos);
+            if (tile != null) saveTile(tilePos, tile);
+        }
+
+        // wait for background-saves that are already running
+        pendingSavesLock.writeLock().lock();
+        pendingSavesLock.writeLock().unlock();
+    }
+
+    /**
+     * Queues a modified tile to be saved in the background.
+     * A tile that is already waiting to be saved will only be saved once, with all its modifications up to that point.
+     */
+    private void scheduleSave(Vector2i tilePos, LowresTile tile) {
+        if (pendingSaves.size() >= MAX_PENDING_SAVES) {
+            if (pendingSaves.get(tilePos) != tile) saveTile(tilePos, tile);
+            return;
+        }
+
+        if (pendingSaves.putIfAbsent(tilePos, tile) != null) return;
+        BlueMap.THREAD_POOL.execute(() -> {
+            pendingSavesLock.readLock().lock();
+            try {
+                LowresTile pendingTile = pendingSaves.remove(tilePos);
+                if (pendingTile != null) saveTile(tilePos, pendingTile);
+            } finally {
+                pendingSavesLock.readLock().unlock();
+            }
+        });
     }
 
     private LowresTile createTile(Vector2i tilePos) {
-        try (InputStream in = storage.read(tilePos.getX(), tilePos.getY())) {
-            if (in != null) return new LowresTile(tileGrid.getGridSize(), in);
+        try {
+            LowresTile tile = loadTile(storage, tilePos);
+            if (tile == null) tile = loadTile(fallbackStorage, tilePos); // e.g. tiles from before the format changed
+            if (tile != null) return tile;
         } catch (IOException e) {
             Logger.global.logError("Failed to load tile " + tilePos + " (lod: " + lod + ")", e);
         }
@@ -105,6 +161,13 @@ private LowresTile createTile(Vector2i tilePos) {
         return new LowresTile(tileGrid.getGridSize());
     }
 
+    private @Nullable LowresTile loadTile(GridStorage storage, Vector2i tilePos) throws IOException {
+        try (CompressedInputStream in = storage.read(tilePos.getX(), tilePos.getY())) {
+            if (in == null) return null;
+            return new LowresTile(tileGrid.getGridSize(), in.decompress());
+        }
+    }
+
     private void saveTile(Vector2i tilePos, @Nullable LowresTile tile) {
         if (tile == null) return;
 
@@ -116,7 +179,8 @@ private void saveTile(Vector2i tilePos, @Nullable LowresTile tile) {
 
         // save the tile
         try (OutputStream out = storage.write(tilePos.getX(), tilePos.getY())) {
-            tile.save(out);
+            if (binaryFormat) tile.saveBinary(out);
+            else tile.save(out, compressionLevel);
         } catch (IOException e) {
             Logger.global.logError("Failed to save tile " + tilePos + " (lod: " + lod + ")", e);
         }
@@ -124,28 +188,29 @@ private void saveTile(Vector2i tilePos, @Nullable LowresTile tile) {
         // write to next LOD (prepare for the most confusing grid-math you will ever see)
         if (this.nextLayer == null) return;
 
+        int nextLodTileX = Math.floorDiv(tilePos.getX(), lodFactor);
+        int nextLodTileY = Math.floorDiv(tilePos.getY(), lodFactor);
+        int groupCountX = Math.floorDiv(tileGrid.getGridSize().getX(), lodFactor);
+        int groupCountY = Math.floorDiv(tileGrid.getGridSize().getY(), lodFactor);
+
+        // downsample the whole tile into buffers first, and write them to the next layer in one go
+        int groupCount = groupCountX * groupCountY;
+        int[] colors = new int[groupCount];
+        int[] heightsAndLights = new int[groupCount];
+
         Color averageColor = new Color();
         int averageHeight, averageBlockLight;
-        int count;
+        int count = lodFactor * lodFactor;
 
         Color color = new Color();
 
-        int nextLodTileX = Math.floorDiv(tilePos.getX(), lodFactor);
-        int nextLodTileY = Math.floorDiv(tilePos.getY(), lodFactor);
-        Vector2i groupCount = new Vector2i(
-                Math.floorDiv(tileGrid.getGridSize().getX(), lodFactor),
-                Math.floorDiv(tileGrid.getGridSize().getY(), lodFactor)
-        );
-
-        for (int gX = 0; gX < groupCount.getX(); gX++) {
-            for (int gY = 0; gY < groupCount.getY(); gY++) {
+        for (int gY = 0; gY < groupCountY; gY++) {
+            for (int gX = 0; gX < groupCountX; gX++) {
                 averageColor.set(0, 0, 0, 0, true);
                 averageHeight = 0;
                 averageBlockLight = 0;
-                count = 0;
                 for (int x = 0; x < lodFactor; x++) {
                     for (int y = 0; y < lodFactor; y++) {
-                        count++;
                         averageColor.add(tile.getColor(gX * lodFactor + x, gY * lodFactor + y, color).premultiplied());
                         averageHeight += tile.getHeight(gX * lodFactor + x, gY * lodFactor + y);
                         averageBlockLight += tile.getBlockLight(gX * lodFactor + x, gY * lodFactor + y);
@@ -155,17 +220,22 @@ private void saveTile(Vector2i tilePos, @Nullable LowresTile tile) {
                 averageHeight /= count;
                 averageBlockLight /= count;
 
-                this.nextLayer.set(
-                        nextLodTileX,
-                        nextLodTileY,
-                        Math.floorMod(tilePos.getX(), lodFactor) * groupCount.getX() + gX,
-                        Math.floorMod(tilePos.getY(), lodFactor) * groupCount.getY() + gY,
-                        averageColor,
-                        averageHeight,
-                        averageBlockLight
-                );
+                int i = gY * groupCountX + gX;
+                colors[i] = averageColor.straight().getInt();
+                heightsAndLights[i] = LowresTile.packHeightAndLight(averageHeight, averageBlockLight);
             }
         }
+
+        this.nextLayer.set(
+                nextLodTileX,
+                nextLodTileY,
+                Math.floorMod(tilePos.getX(), lodFactor) * groupCountX,
+                Math.floorMod(tilePos.getY(), lodFactor) * groupCountY,
+                groupCountX,
+                groupCountY,
+                colors,
+                heightsAndLights
+        );
     }
 
     private LowresTile getTile(int x, int z) {
@@ -193,4 +263,32 @@ void set(int cellX, int cellZ, int pixelX, int pixelZ, Color color, int height,
         }
     }
 
+    /**
+     * Sets a rectangle of pixels (packed like {@link LowresTile#set(int, int, int, int, int[], int[], int, int)})
+     * in the given tile, including the seamless edges of the neighboring tiles.
+     */
+    void set(int cellX, int cellZ, int pixelX, int pixelZ, int width, int height, int[] colors, int[] heightsAndLights) {
+        getTile(cellX, cellZ)
+                .set(pixelX, pixelZ, width, height, colors, heightsAndLights, 0, width);
+
+        // for seamless edges
+        int edgeX = tileGrid.getGridSize().getX();
+        int edgeZ = tileGrid.getGridSize().getY();
+
+        if (pixelX == 0) {
+            getTile(cellX - 1, cellZ)
+                    .set(edgeX, pixelZ, 1, height, colors, heightsAndLights, 0, width);
+        }
+
+        if (pixelZ == 0) {
+            getTile(cellX, cellZ - 1)
+                    .set(pixelX, edgeZ, width, 1, colors, heightsAndLights, 0, width);
+        }
+
+        if (pixelX == 0 && pixelZ == 0) {
+            getTile(cellX - 1, cellZ - 1)
+                    .set(edgeX, edgeZ, 1, 1, colors, heightsAndLights, 0, width);
+        }
+    }
+
 }
@@ -25,78 +25,195 @@
 package de.bluecolored.bluemap.core.map.lowres;
 
 import com.flowpowered.math.vector.Vector2i;
+import de.bluecolored.bluemap.core.util.PNGEncoder;
 import de.bluecolored.bluemap.core.util.math.Color;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * A lowres-tile, storing the color (upper half) and the height and block-light (lower half) of each pixel as ARGB
+ * in a plain int-array.<br>
+ * <br>
+ * Pixels can be written concurrently without any locking. A save works on a snapshot-copy of the pixels, and a pixel
+ * that is written while the tile is being saved will always leave the tile {@link #isDirty() dirty}.
+ */
 public class LowresTile {
 
     public static final int HEIGHT_UNDEFINED = Integer.MIN_VALUE;
 
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final VarHandle DATA = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final ThreadLocal<SaveBuffer> SAVE_BUFFER = ThreadLocal.withInitial(SaveBuffer::new);
 
-    private final BufferedImage texture;
+    private final int[] data;
     private final Vector2i size;
 
+    // pixels are written (opaque) and then fenced before the dirty-flag is checked, and a save clears the flag and
+    // fences before copying the pixels, so a pixel-write is either contained in the snapshot or (re-)marks the tile
+    // as dirty
+    private volatile boolean dirty = false;
+
     public LowresTile(Vector2i tileSize) {
         this.size = tileSize.add(1, 1); // add 1 for seamless edges
-        this.texture = new BufferedImage(this.size.getX(), this.size.getY() * 2, BufferedImage.TYPE_INT_ARGB);
+        this.data = new int[this.size.getX() * this.size.getY() * 2];
     }
 
+    /**
+     * Loads a tile from the given (decompressed) stream, which can either contain a PNG or the
+     * {@link LowresTileBinaryFormat binary format}
+     */
     public LowresTile(Vector2i tileSize, InputStream in) throws IOException {
         this.size = tileSize.add(1, 1); // add 1 for seamless edges
-        this.texture = ImageIO.read(in);
 
-        if (this.texture == null) {
+        in = new BufferedInputStream(in);
+        byte[] magic = new byte[LowresTileBinaryFormat.MAGIC.length];
+        in.mark(magic.length);
+        if (in.readNBytes(magic, 0, magic.length) == magic.length && Arrays.equals(magic, LowresTileBinaryFormat.MAGIC)) {
+            this.data = LowresTileBinaryFormat.read(in, size.getX(), size.getY());
+            return;
+        }
+        in.reset();
+
+        BufferedImage image = ImageIO.read(in);
+
+        if (image == null) {
             throw new IOException("No registered ImageReader is able to read the image-stream");
         }
 
-        if (this.texture.getWidth() != this.size.getX() || this.texture.getHeight() != this.size.getY() * 2) {
+        if (image.getWidth() != this.size.getX() || image.getHeight() != this.size.getY() * 2) {
             throw new IOException("Size of tile does not match");
         }
+
+        this.data = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
     }
 
     public void set(int x, int z, Color color, int height, int blockLight) {
-        lock.readLock().lock();
-        try {
-            texture.setRGB(x, z, color.straight().getInt());
-            texture.setRGB(x, size.getY() + z,
-                    (height & 0x0000FFFF) |
-                            ((blockLight << 16) & 0x00FF0000) |
-                            0xFF000000
-            );
-        } finally {
-            lock.readLock().unlock();
+        DATA.setOpaque(data, z * size.getX() + x, color.straight().getInt());
+        DATA.setOpaque(data, (size.getY() + z) * size.getX() + x, packHeightAndLight(height, blockLight));
+        VarHandle.fullFence();
+        if (!dirty) dirty = true;
+    }
+
+    /**
+     * Sets a whole rectangle of pixels at once.<br>
+     * The colors are straight ARGB-ints, the height and block-light values are packed with
+     * {@link #packHeightAndLight(int, int)}. Both source arrays are read starting at srcOffset, with srcStride
+     * values per row.
+     */
+    public void set(int x, int z, int width, int height, int[] colors, int[] heightsAndLights, int srcOffset, int srcStride) {
+        int sizeX = size.getX(), dataOffset = size.getY() * sizeX;
+
+        for (int row = 0; row < height; row++) {
+            int src = srcOffset + row * srcStride;
+            int dst = (z + row) * sizeX + x;
+            for (int i = 0; i < width; i++) {
+                DATA.setOpaque(data, dst + i, colors[src + i]);
+                DATA.setOpaque(data, dataOffset + dst + i, heightsAndLights[src + i]);
+            }
         }
+        VarHandle.fullFence();
+        if (!dirty) dirty = true;
     }
 
     public Color getColor(int x, int z, Color target) {
-        return target.set(texture.getRGB(x, z));
+        return target.set(data[z * size.getX() + x]);
     }
 
     public int getHeight(int x, int z) {
-        int height = texture.getRGB(x, size.getY() + z) & 0x0000FFFF;
+        int height = data[(size.getY() + z) * size.getX() + x] & 0x0000FFFF;
         if (height > 0x00008000)
             return height | 0xFFFF0000;
         return height;
     }
 
     public int getBlockLight(int x, int z) {
-        return (texture.getRGB(x, size.getY() + z) & 0x00FF0000) >> 16;
+        return (data[(size.getY() + z) * size.getX() + x] & 0x00FF0000) >> 16;
+    }
+
+    /**
+     * Returns true if this tile has been modified since it has been loaded or last saved
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns the (approximate) amount of memory in bytes that this tile is using
+     */
+    public long getMemorySize() {
+        return data.length * 4L;
+    }
+
+    public static int packHeightAndLight(int height, int blockLight) {
+        return  (height & 0x0000FFFF) |
+                ((blockLight << 16) & 0x00FF0000) |
+                0xFF000000;
     }
 
-    public void save(OutputStream out) throws IOException {
-        lock.writeLock().lock();
+    /**
+     * Saves this tile as a PNG, using the given deflate-level.<br>
+     * The color-half is filtered adaptively per row, the height/light-half is mostly a smooth gradient with a constant
+     * alpha-channel, for which paeth is a good fit without needing to try all filters.
+     */
+    public synchronized void save(OutputStream out, int compressionLevel) throws IOException {
+        SaveBuffer buffer = SAVE_BUFFER.get();
+        buffer.encoder.setCompressionLevel(compressionLevel);
+
+        dirty = false;
+        int[] snapshot = buffer.snapshot(data);
+
+        int colorRows = size.getY();
         try {
-            ImageIO.write(texture, "png", out);
-        } finally {
-            lock.writeLock().unlock();
+            buffer.encoder.write(snapshot, size.getX(), size.getY() * 2, row -> {
+                if (row < colorRows) return PNGEncoder.RowFilter.ADAPTIVE;
+                if (row == colorRows) return PNGEncoder.RowFilter.SUB; // the row above is unrelated color-data
+                return PNGEncoder.RowFilter.PAETH;
+            }, out);
+        } catch (IOException | RuntimeException ex) {
+            dirty = true;
+            throw ex;
         }
     }
 
+    /**
+     * Saves this tile in the {@link LowresTileBinaryFormat binary format}.
+     * The output is not compressed, so the stream should usually compress it.
+     */
+    public synchronized void saveBinary(OutputStream out) throws IOException {
+        SaveBuffer buffer = SAVE_BUFFER.get();
+
+        dirty = false;
+        int[] snapshot = buffer.snapshot(data);
+
+        try {
+            buffer.binary = LowresTileBinaryFormat.write(snapshot, size.getX(), size.getY(), buffer.binary, out);
+        } catch (IOException | RuntimeException ex) {
+            dirty = true;
+            throw ex;
+        }
+    }
+
+    private static class SaveBuffer {
+
+        private final PNGEncoder encoder = new PNGEncoder();
+        private int[] snapshot = new int[0];
+        private byte[] binary = new byte[0];
+
+        private int[] snapshot(int[] data) {
+            if (snapshot.length != data.length) snapshot = new int[data.length];
+            VarHandle.fullFence(); // between clearing the dirty-flag and reading the pixels
+            for (int i = 0; i < data.length; i++)
+                snapshot[i] = (int) DATA.getOpaque(data, i);
+            return snapshot;
+        }
+
+    }
+
 }
@@ -0,0 +1,148 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.lowres;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary lowres-tile format (".lrbm"), an alternative to saving the tiles as PNG.<br>
+ * <br>
+ * After a small header (magic, version, width and height of one half) the tile is stored as separate byte-planes:
+ * red, green, blue and alpha of the color-half, followed by the low and high byte of the height and the block-light.
+ * Each plane is delta-encoded against the left neighbor (the first column against the pixel above), for the height
+ * the delta is calculated on the full 16-bit value.<br>
+ * The format itself is not compressed, it is meant to be written to a storage using the map's compression.
+ */
+final class LowresTileBinaryFormat {
+
+    static final byte[] MAGIC = "LRBM".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 5;
+    static final int PLANE_COUNT = 7;
+
+    private LowresTileBinaryFormat() {}
+
+    /**
+     * Writes the ARGB data (color-half and height/light-half) of a tile to the given stream, using (and growing) the
+     * given buffer.
+     * @return the (possibly new) buffer, to be reused for the next write
+     */
+    static byte[] write(int[] data, int width, int height, byte[] buffer, OutputStream out) throws IOException {
+        int planeSize = width * height;
+        int length = HEADER_SIZE + planeSize * PLANE_COUNT;
+        if (buffer.length < length) buffer = new byte[length];
+
+        System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+        int h = MAGIC.length;
+        buffer[h++] = FORMAT_VERSION;
+        buffer[h++] = (byte) width;
+        buffer[h++] = (byte) (width >> 8);
+        buffer[h++] = (byte) height;
+        buffer[h] = (byte) (height >> 8);
+
+        int r = HEADER_SIZE, g = r + planeSize, b = g + planeSize, a = b + planeSize;
+        int heightLow = a + planeSize, heightHigh = heightLow + planeSize, light = heightHigh + planeSize;
+        int dataOffset = planeSize;
+
+        for (int i = 0; i < planeSize; i++) {
+            int ref = referenceIndex(i, width);
+
+            int color = data[i], colorRef = ref < 0 ? 0 : data[ref];
+            buffer[r + i] = (byte) ((color >> 16) - (colorRef >> 16));
+            buffer[g + i] = (byte) ((color >> 8) - (colorRef >> 8));
+            buffer[b + i] = (byte) (color - colorRef);
+            buffer[a + i] = (byte) ((color >>> 24) - (colorRef >>> 24));
+
+            int value = data[dataOffset + i], valueRef = ref < 0 ? 0 : data[dataOffset + ref];
+            int heightDelta = (value & 0xFFFF) - (valueRef & 0xFFFF);
+            buffer[heightLow + i] = (byte) heightDelta;
+            buffer[heightHigh + i] = (byte) (heightDelta >> 8);
+            buffer[light + i] = (byte) ((value >> 16) - (valueRef >> 16));
+        }
+
+        out.write(buffer, 0, length);
+        return buffer;
+    }
+
+    /**
+     * Reads a tile that has been written with {@link #write(int[], int, int, byte[], OutputStream)}.<br>
+     * The stream is expected to be positioned right after the {@link #MAGIC}.
+     */
+    static int[] read(InputStream in, int width, int height) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        byte[] header = new byte[HEADER_SIZE - MAGIC.length];
+        dataIn.readFully(header);
+
+        if (header[0] != FORMAT_VERSION)
+            throw new IOException("Unsupported lowres-tile format-version: " + header[0]);
+
+        int fileWidth = (header[1] & 0xFF) | (header[2] & 0xFF) << 8;
+        int fileHeight = (header[3] & 0xFF) | (header[4] & 0xFF) << 8;
+        if (fileWidth != width || fileHeight != height)
+            throw new IOException("Size of tile does not match");
+
+        int planeSize = width * height;
+        byte[] planes = new byte[planeSize * PLANE_COUNT];
+        dataIn.readFully(planes);
+
+        int r = 0, g = r + planeSize, b = g + planeSize, a = b + planeSize;
+        int heightLow = a + planeSize, heightHigh = heightLow + planeSize, light = heightHigh + planeSize;
+        int dataOffset = planeSize;
+
+        int[] data = new int[planeSize * 2];
+        for (int i = 0; i < planeSize; i++) {
+            int ref = referenceIndex(i, width);
+
+            int colorRef = ref < 0 ? 0 : data[ref];
+            data[i] =
+                    ((colorRef >>> 24) + planes[a + i] & 0xFF) << 24 |
+                    ((colorRef >> 16) + planes[r + i] & 0xFF) << 16 |
+                    ((colorRef >> 8) + planes[g + i] & 0xFF) << 8 |
+                    (colorRef + planes[b + i] & 0xFF);
+
+            int valueRef = ref < 0 ? 0 : data[dataOffset + ref];
+            int heightDelta = (planes[heightLow + i] & 0xFF) | (planes[heightHigh + i] & 0xFF) << 8;
+            data[dataOffset + i] =
+                    0xFF000000 |
+                    ((valueRef >> 16) + planes[light + i] & 0xFF) << 16 |
+                    (valueRef + heightDelta & 0xFFFF);
+        }
+
+        return data;
+    }
+
+    /**
+     * Returns the index of the pixel that the pixel at the given index is delta-encoded against,
+     * or a negative value for the very first pixel
+     */
+    private static int referenceIndex(int index, int width) {
+        return index % width == 0 ? index - width : index - 1;
+    }
+
+}
@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.core.map.lowres;
 
 import de.bluecolored.bluemap.core.map.TileMetaConsumer;
+import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.storage.MapStorage;
 import de.bluecolored.bluemap.core.util.Grid;
 import de.bluecolored.bluemap.core.util.math.Color;
@@ -33,17 +34,23 @@ public class LowresTileManager implements TileMetaConsumer {
 
     private final Grid tileGrid;
     private final int lodFactor, lodCount;
+    private final boolean binaryFormat;
 
     private final LowresLayer[] layers;
 
-    public LowresTileManager(MapStorage storage, Grid tileGrid, int lodCount, int lodFactor) {
+    public LowresTileManager(MapStorage storage, Grid tileGrid, int lodCount, int lodFactor, int compressionLevel, long cacheMemoryLimit, boolean binaryFormat) {
         this.tileGrid = tileGrid;
         this.lodFactor = lodFactor;
         this.lodCount = lodCount;
+        this.binaryFormat = binaryFormat;
 
         this.layers = new LowresLayer[lodCount];
         for (int i = lodCount - 1; i >= 0; i--) {
-            this.layers[i] = new LowresLayer(storage.lowresTiles(i + 1), tileGrid, lodFactor, i + 1,
+            GridStorage pngStorage = storage.lowresTiles(i + 1);
+            GridStorage binaryStorage = storage.lowresBinaryTiles(i + 1);
+            this.layers[i] = new LowresLayer(
+                    binaryFormat ? binaryStorage : pngStorage, binaryFormat ? pngStorage : binaryStorage, binaryFormat,
+                    tileGrid, lodFactor, i + 1, compressionLevel, cacheMemoryLimit / lodCount,
                     (i == lodCount - 1) ? null : layers[i + 1]);
         }
     }
@@ -66,6 +73,10 @@ public int getLodFactor() {
         return lodFactor;
     }
 
+    public boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
     @Override
     public void set(int x, int z, Color color, int height, int blockLight) {
         int cellX = tileGrid.getCellX(x);
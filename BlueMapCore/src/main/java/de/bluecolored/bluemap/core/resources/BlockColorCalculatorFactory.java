@@ -27,9 +27,14 @@
 import com.flowpowered.math.GenericMath;
 import com.google.gson.stream.JsonReader;
 import de.bluecolored.bluemap.api.debug.DebugDump;
+import de.bluecolored.bluemap.core.map.hires.BiomeTintField;
+import de.bluecolored.bluemap.core.map.hires.TileVoxelVolume;
+import de.bluecolored.bluemap.core.util.IdTable;
 import de.bluecolored.bluemap.core.util.math.Color;
 import de.bluecolored.bluemap.core.world.Biome;
+import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
@@ -54,9 +59,11 @@ public class BlockColorCalculatorFactory {
     private final int[] grassMap = new int[65536];
 
     private final Map<String, ColorFunction> blockColorMap;
+    private final IdTable<ColorFunction> blockColorTable;
 
     public BlockColorCalculatorFactory() {
         this.blockColorMap = new HashMap<>();
+        this.blockColorTable = new IdTable<>(id -> getColorFunction(BlockState.byId(id)));
     }
 
     public void load(Path configFile) throws IOException {
@@ -97,6 +104,8 @@ public void load(Path configFile) throws IOException {
 
             json.endObject();
         }
+
+        blockColorTable.clear();
     }
 
     public void setFoliageMap(BufferedImage foliageMap) {
@@ -111,6 +120,13 @@ public BlockColorCalculator createCalculator() {
         return new BlockColorCalculator();
     }
 
+    private ColorFunction getColorFunction(BlockState blockState) {
+        ColorFunction colorFunction = blockColorMap.get(blockState.getFormatted());
+        if (colorFunction == null) colorFunction = blockColorMap.get("default");
+        if (colorFunction == null) colorFunction = BlockColorCalculator::getFoliageAverageColor;
+        return colorFunction;
+    }
+
     @FunctionalInterface
     private interface ColorFunction {
         Color invoke(BlockColorCalculator calculator, BlockNeighborhood<?> block, Color target);
@@ -120,13 +136,13 @@ public class BlockColorCalculator {
 
         private final Color tempColor = new Color();
 
-        public Color getBlockColor(BlockNeighborhood<?> block, Color target) {
-            String blockId = block.getBlockState().getFormatted();
-
-            ColorFunction colorFunction = blockColorMap.get(blockId);
-            if (colorFunction == null) colorFunction = blockColorMap.get("default");
-            if (colorFunction == null) colorFunction = BlockColorCalculator::getFoliageAverageColor;
+        private final BiomeTintField.BiomeColorFunction
+                waterColorFunction = (biome, target) -> target.set(biome.getWaterColor()),
+                foliageColorFunction = this::getFoliageColor,
+                grassColorFunction = this::getGrassColor;
 
+        public Color getBlockColor(BlockNeighborhood<?> block, Color target) {
+            ColorFunction colorFunction = blockColorTable.get(block.getBlockState().getId());
             return colorFunction.invoke(this, block, target);
         }
 
@@ -139,6 +155,8 @@ public Color getRedstoneColor(BlockNeighborhood<?> block, Color target) {
         }
 
         public Color getWaterAverageColor(BlockNeighborhood<?> block, Color target) {
+            if (getTintFieldColor(block, BiomeTintField.Tint.WATER, waterColorFunction, target) != null) return target;
+
             target.set(0, 0, 0, 0, true);
 
             int x, y, z;
@@ -157,6 +175,8 @@ public Color getWaterAverageColor(BlockNeighborhood<?> block, Color target) {
         }
 
         public Color getFoliageAverageColor(BlockNeighborhood<?> block, Color target) {
+            if (getTintFieldColor(block, BiomeTintField.Tint.FOLIAGE, foliageColorFunction, target) != null) return target;
+
             target.set(0, 0, 0, 0, true);
 
             int x, y, z;
@@ -180,6 +200,8 @@ public Color getFoliageColor(Biome biome, Color target) {
         }
 
         public Color getGrassAverageColor(BlockNeighborhood<?> block, Color target) {
+            if (getTintFieldColor(block, BiomeTintField.Tint.GRASS, grassColorFunction, target) != null) return target;
+
             target.set(0, 0, 0, 0, true);
 
             int x, y, z;
@@ -202,6 +224,21 @@ public Color getGrassColor(Biome biome, Color target) {
             return target.overlay(biome.getOverlayGrassColor());
         }
 
+        /**
+         * Looks up the blended color from the {@link BiomeTintField} of the blocks {@link TileVoxelVolume},
+         * returns null if the block has no volume or is outside the tint-field
+         */
+        private @Nullable Color getTintFieldColor(
+                BlockNeighborhood<?> block,
+                BiomeTintField.Tint tint,
+                BiomeTintField.BiomeColorFunction colorFunction,
+                Color target
+        ) {
+            TileVoxelVolume volume = block.getVolume();
+            if (volume == null) return null;
+            return volume.getTintField(tint, colorFunction).get(block.getX(), block.getY(), block.getZ(), target);
+        }
+
         private void getColorFromMap(Biome biome, int[] colorMap, int defaultColor, Color target) {
             double temperature = GenericMath.clamp(biome.getTemp(), 0.0, 1.0);
             double humidity = GenericMath.clamp(biome.getHumidity(), 0.0, 1.0);
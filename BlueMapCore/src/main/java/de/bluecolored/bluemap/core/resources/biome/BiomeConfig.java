@@ -34,6 +34,7 @@
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -41,9 +42,11 @@
 public class BiomeConfig {
 
     private final Map<String, Biome> biomes;
+    private Biome[] biomesById;
 
     public BiomeConfig() {
         biomes = new HashMap<>();
+        biomesById = new Biome[0];
     }
 
     public void load(Path configFile) throws IOException {
@@ -59,7 +62,7 @@ public void load(Path configFile) throws IOException {
                 Biome biome = entry.createBiome(formatted);
 
                 // don't overwrite already present values, higher priority resources are loaded first
-                biomes.putIfAbsent(biome.getFormatted(), biome);
+                register(biome);
             }
 
             json.endObject();
@@ -79,7 +82,7 @@ public void loadDatapackBiome(String namespace, Path biomeFile) throws IOExcepti
             Biome biome = dpBiome.createBiome(formatted);
 
             // don't overwrite already present values, higher priority resources are loaded first
-            biomes.putIfAbsent(biome.getFormatted(), biome);
+            register(biome);
         }
     }
 
@@ -87,4 +90,29 @@ public Biome getBiome(String formatted) {
         return biomes.getOrDefault(formatted, Biome.DEFAULT);
     }
 
+    /**
+     * Returns the biome with the given {@link Biome#getId() id}, or {@link Biome#DEFAULT} if there is no such biome
+     */
+    public Biome getBiome(int id) {
+        Biome[] biomesById = this.biomesById;
+        if (id < 0 || id >= biomesById.length) return Biome.DEFAULT;
+        Biome biome = biomesById[id];
+        return biome != null ? biome : Biome.DEFAULT;
+    }
+
+    /**
+     * Returns all loaded biomes indexed by their {@link Biome#getId() id}, ids without a biome are null
+     */
+    public Biome[] getBiomesById() {
+        return biomesById;
+    }
+
+    private void register(Biome biome) {
+        if (biomes.putIfAbsent(biome.getFormatted(), biome) != null) return;
+
+        int id = biome.getId();
+        if (id >= biomesById.length) biomesById = Arrays.copyOf(biomesById, Math.max(id + 1, biomesById.length * 2));
+        biomesById[id] = biome;
+    }
+
 }
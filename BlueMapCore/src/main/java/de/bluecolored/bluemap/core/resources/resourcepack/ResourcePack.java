@@ -24,8 +24,6 @@
  */
 package de.bluecolored.bluemap.core.resources.resourcepack;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import de.bluecolored.bluemap.api.debug.DebugDump;
@@ -39,8 +37,13 @@
 import de.bluecolored.bluemap.core.resources.resourcepack.blockmodel.BlockModel;
 import de.bluecolored.bluemap.core.resources.resourcepack.blockmodel.TextureVariable;
 import de.bluecolored.bluemap.core.resources.resourcepack.blockstate.BlockState;
+import de.bluecolored.bluemap.core.resources.resourcepack.blockstate.Multipart;
+import de.bluecolored.bluemap.core.resources.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.resourcepack.blockstate.VariantSet;
+import de.bluecolored.bluemap.core.resources.resourcepack.blockstate.Variants;
 import de.bluecolored.bluemap.core.resources.resourcepack.texture.AnimationMeta;
 import de.bluecolored.bluemap.core.resources.resourcepack.texture.Texture;
+import de.bluecolored.bluemap.core.util.IdTable;
 import de.bluecolored.bluemap.core.util.Tristate;
 import de.bluecolored.bluemap.core.world.Biome;
 import de.bluecolored.bluemap.core.world.BlockProperties;
@@ -83,7 +86,8 @@ public class ResourcePack {
     private final BiomeConfig biomeConfig;
     private final BlockPropertiesConfig blockPropertiesConfig;
 
-    private final LoadingCache<de.bluecolored.bluemap.core.world.BlockState, BlockProperties> blockPropertiesCache;
+    private final IdTable<BlockState> blockStateTable;
+    private final IdTable<BlockProperties> blockPropertiesTable;
 
     public ResourcePack() {
         this.blockStatePaths = new HashMap<>();
@@ -98,10 +102,8 @@ public ResourcePack() {
         this.biomeConfig = new BiomeConfig();
         this.blockPropertiesConfig = new BlockPropertiesConfig();
 
-        this.blockPropertiesCache = Caffeine.newBuilder()
-                .executor(BlueMap.THREAD_POOL)
-                .maximumSize(10000)
-                .build(this::loadBlockProperties);
+        this.blockStateTable = new IdTable<>(id -> loadBlockState(de.bluecolored.bluemap.core.world.BlockState.byId(id)));
+        this.blockPropertiesTable = new IdTable<>(id -> loadBlockProperties(de.bluecolored.bluemap.core.world.BlockState.byId(id)));
     }
 
     @Nullable
@@ -111,6 +113,11 @@ public ResourcePath<BlockState> getBlockStatePath(String formatted) {
 
     @Nullable
     public BlockState getBlockState(de.bluecolored.bluemap.core.world.BlockState blockState) {
+        return blockStateTable.get(blockState.getId());
+    }
+
+    @Nullable
+    private BlockState loadBlockState(de.bluecolored.bluemap.core.world.BlockState blockState) {
         ResourcePath<BlockState> path = blockStatePaths.get(blockState.getFormatted());
         return path != null ? path.getResource(this::getBlockState) : MISSING_BLOCK_STATE.getResource(this::getBlockState);
     }
@@ -163,8 +170,16 @@ public Biome getBiome(String formatted) {
         return biomeConfig.getBiome(formatted);
     }
 
+    public Biome getBiome(int id) {
+        return biomeConfig.getBiome(id);
+    }
+
     public BlockProperties getBlockProperties(de.bluecolored.bluemap.core.world.BlockState state) {
-        return blockPropertiesCache.get(state);
+        return blockPropertiesTable.get(state.getId());
+    }
+
+    public BlockProperties getBlockProperties(int blockStateId) {
+        return blockPropertiesTable.get(blockStateId);
     }
 
     private BlockProperties loadBlockProperties(de.bluecolored.bluemap.core.world.BlockState state) {
@@ -437,6 +452,22 @@ private void bake() throws IOException, InterruptedException {
             model.calculateProperties(this);
         }
 
+        if (Thread.interrupted()) throw new InterruptedException();
+
+        // bake variant models
+        for (BlockState blockState : blockStates.values()) {
+            Variants variants = blockState.getVariants();
+            if (variants != null) {
+                for (VariantSet variantSet : variants.getVariants()) bakeVariants(variantSet);
+                if (variants.getDefaultVariant() != null) bakeVariants(variants.getDefaultVariant());
+            }
+
+            Multipart multipart = blockState.getMultipart();
+            if (multipart != null) {
+                for (VariantSet variantSet : multipart.getParts()) bakeVariants(variantSet);
+            }
+        }
+
         BufferedImage foliage = new ResourcePath<BufferedImage>("minecraft:colormap/foliage").getResource(colormaps::get);
         if (foliage == null) throw new IOException("Failed to bake resource-pack: No foliage-colormap found!");
         this.colorCalculatorFactory.setFoliageMap(foliage);
@@ -447,6 +478,12 @@ private void bake() throws IOException, InterruptedException {
 
     }
 
+    private void bakeVariants(VariantSet variantSet) {
+        for (Variant variant : variantSet.getVariants()) {
+            variant.bake(this);
+        }
+    }
+
     private <T> void loadResource(Path root, Path file, Loader<T> loader, Map<ResourcePath<T>, T> resultMap) {
         try {
             ResourcePath<T> resourcePath = new ResourcePath<>(root.relativize(file));
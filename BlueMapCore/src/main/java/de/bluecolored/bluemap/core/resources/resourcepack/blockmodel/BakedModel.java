@@ -0,0 +1,429 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.resources.resourcepack.blockmodel;
+
+import com.flowpowered.math.TrigMath;
+import com.flowpowered.math.vector.Vector3f;
+import com.flowpowered.math.vector.Vector3i;
+import com.flowpowered.math.vector.Vector4f;
+import de.bluecolored.bluemap.api.debug.DebugDump;
+import de.bluecolored.bluemap.core.resources.ResourcePath;
+import de.bluecolored.bluemap.core.resources.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.resources.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.resourcepack.texture.Texture;
+import de.bluecolored.bluemap.core.util.Direction;
+import de.bluecolored.bluemap.core.util.math.MatrixM4f;
+import de.bluecolored.bluemap.core.util.math.VectorM2f;
+import de.bluecolored.bluemap.core.util.math.VectorM3f;
+import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BlockModel} with all the geometry of a specific {@link Variant} already computed.<br>
+ * This contains everything about the model that does not depend on the world the block is placed in,
+ * so it only needs to be calculated once when the resources are loaded instead of for every rendered block.
+ */
+@DebugDump
+public class BakedModel {
+    private static final float BLOCK_SCALE = 1f / 16f;
+
+    private static final Direction[] FACE_DIRECTIONS = {
+            Direction.DOWN, Direction.UP, Direction.NORTH, Direction.SOUTH, Direction.WEST, Direction.EAST
+    };
+
+    private static final int[][] FACE_CORNERS = {
+            {0, 2, 3, 1}, // DOWN
+            {5, 7, 6, 4}, // UP
+            {2, 0, 4, 6}, // NORTH
+            {1, 3, 7, 5}, // SOUTH
+            {0, 1, 5, 4}, // WEST
+            {3, 2, 6, 7}  // EAST
+    };
+
+    public static final BakedModel EMPTY = new BakedModel(false, new BakedFace[0]);
+
+    private final boolean ambientOcclusion;
+    private final BakedFace[] faces;
+
+    private BakedModel(boolean ambientOcclusion, BakedFace[] faces) {
+        this.ambientOcclusion = ambientOcclusion;
+        this.faces = faces;
+    }
+
+    public boolean isAmbientOcclusion() {
+        return ambientOcclusion;
+    }
+
+    public BakedFace[] getFaces() {
+        return faces;
+    }
+
+    public static BakedModel bake(Variant variant, ResourcePack resourcePack) {
+        BlockModel model = variant.getModel().getResource(resourcePack::getBlockModel);
+        if (model == null) return EMPTY;
+
+        Element[] elements = model.getElements();
+        if (elements == null) return new BakedModel(model.isAmbientocclusion(), EMPTY.faces);
+
+        Baker baker = new Baker(variant, model, resourcePack);
+        List<BakedFace> faces = new ArrayList<>();
+        for (Element element : elements) {
+            baker.bakeElement(element, faces);
+        }
+
+        return new BakedModel(model.isAmbientocclusion(), faces.toArray(BakedFace[]::new));
+    }
+
+    /**
+     * A single (quad-)face of a baked model.<br>
+     * All neighbor-offsets are already relative to the rotation of the variant.
+     */
+    @DebugDump
+    public static class BakedFace {
+
+        /**
+         * The number of ao-masks per corner, see {@link #getAoNeighborMasks()}
+         */
+        public static final int AO_MASK_LAYERS = 4;
+
+        private final float[] positions;
+        private final float[] uvs;
+        @Nullable private final ResourcePath<Texture> texturePath;
+        @Nullable private final Texture texture;
+        private final int tintIndex;
+        private final boolean facingUp;
+        private final Vector3i lightNeighbor;
+        private final int cullNeighborBit;
+        private final int[] aoNeighborMasks;
+
+        private BakedFace(
+                float[] positions, float[] uvs,
+                @Nullable ResourcePath<Texture> texturePath, @Nullable Texture texture,
+                int tintIndex, boolean facingUp,
+                Vector3i lightNeighbor, int cullNeighborBit,
+                int[] aoNeighborMasks
+        ) {
+            this.positions = positions;
+            this.uvs = uvs;
+            this.texturePath = texturePath;
+            this.texture = texture;
+            this.tintIndex = tintIndex;
+            this.facingUp = facingUp;
+            this.lightNeighbor = lightNeighbor;
+            this.cullNeighborBit = cullNeighborBit;
+            this.aoNeighborMasks = aoNeighborMasks;
+        }
+
+        /**
+         * The positions of the 4 corners of this face (x, y, z for each corner), already transformed into block-space
+         */
+        public float[] getPositions() {
+            return positions;
+        }
+
+        /**
+         * The uvs of the 4 corners of this face (u, v for each corner), already rotated
+         */
+        public float[] getUvs() {
+            return uvs;
+        }
+
+        @Nullable
+        public ResourcePath<Texture> getTexturePath() {
+            return texturePath;
+        }
+
+        @Nullable
+        public Texture getTexture() {
+            return texture;
+        }
+
+        public int getTintIndex() {
+            return tintIndex;
+        }
+
+        /**
+         * If this face is (after all rotations) facing upwards and therefore contributes to the map-color of the block
+         */
+        public boolean isFacingUp() {
+            return facingUp;
+        }
+
+        /**
+         * The relative position of the neighbor-block that this face is facing, used for light-calculation
+         */
+        public Vector3i getLightNeighbor() {
+            return lightNeighbor;
+        }
+
+        /**
+         * The bit of the neighbor-block that can cull this face, or -1 if this face can not be culled.<br>
+         * See {@link BlockNeighborhood#neighborBit(int, int, int)} and {@link BlockNeighborhood#getCullingMask()}
+         */
+        public int getCullNeighborBit() {
+            return cullNeighborBit;
+        }
+
+        /**
+         * For each of the 4 corners {@link #AO_MASK_LAYERS} masks of the neighbor-blocks that need to be tested for
+         * ambient-occlusion (the masks of corner <code>i</code> start at index <code>i * AO_MASK_LAYERS</code>).<br>
+         * A neighbor can be tested multiple times for the same corner (e.g. for vertices that are not on the edge of
+         * the block) and then counts multiple times, so its bit is set in that many of the corner's masks.<br>
+         * See {@link BlockNeighborhood#neighborBit(int, int, int)} and {@link BlockNeighborhood#getOccludingMask()}
+         */
+        public int[] getAoNeighborMasks() {
+            return aoNeighborMasks;
+        }
+
+    }
+
+    private static class Baker {
+
+        private final Variant variant;
+        private final BlockModel model;
+        private final ResourcePack resourcePack;
+
+        private final MatrixM4f elementTransform = new MatrixM4f();
+        private final MatrixM4f variantTransform = new MatrixM4f();
+        private final VectorM3f[] corners = new VectorM3f[8];
+        private final VectorM2f[] rawUvs = new VectorM2f[4];
+        private final VectorM3f vector = new VectorM3f(0, 0, 0);
+
+        private Baker(Variant variant, BlockModel model, ResourcePack resourcePack) {
+            this.variant = variant;
+            this.model = model;
+            this.resourcePack = resourcePack;
+
+            for (int i = 0; i < corners.length; i++) corners[i] = new VectorM3f(0, 0, 0);
+            for (int i = 0; i < rawUvs.length; i++) rawUvs[i] = new VectorM2f(0, 0);
+
+            variantTransform.identity()
+                    .translate(-0.5f, -0.5f, -0.5f)
+                    .multiplyTo(variant.getRotationMatrix())
+                    .translate(0.5f, 0.5f, 0.5f);
+        }
+
+        private void bakeElement(Element element, List<BakedFace> faces) {
+            Vector3f from = element.getFrom();
+            Vector3f to = element.getTo();
+
+            float
+                    minX = Math.min(from.getX(), to.getX()),
+                    minY = Math.min(from.getY(), to.getY()),
+                    minZ = Math.min(from.getZ(), to.getZ()),
+                    maxX = Math.max(from.getX(), to.getX()),
+                    maxY = Math.max(from.getY(), to.getY()),
+                    maxZ = Math.max(from.getZ(), to.getZ());
+
+            VectorM3f[] c = corners;
+            c[0].x = minX; c[0].y = minY; c[0].z = minZ;
+            c[1].x = minX; c[1].y = minY; c[1].z = maxZ;
+            c[2].x = maxX; c[2].y = minY; c[2].z = minZ;
+            c[3].x = maxX; c[3].y = minY; c[3].z = maxZ;
+            c[4].x = minX; c[4].y = maxY; c[4].z = minZ;
+            c[5].x = minX; c[5].y = maxY; c[5].z = maxZ;
+            c[6].x = maxX; c[6].y = maxY; c[6].z = minZ;
+            c[7].x = maxX; c[7].y = maxY; c[7].z = maxZ;
+
+            elementTransform
+                    .copy(element.getRotation().getMatrix())
+                    .scale(BLOCK_SCALE, BLOCK_SCALE, BLOCK_SCALE);
+
+            for (int i = 0; i < FACE_DIRECTIONS.length; i++) {
+                BakedFace face = bakeFace(element, FACE_DIRECTIONS[i], FACE_CORNERS[i]);
+                if (face != null) faces.add(face);
+            }
+        }
+
+        private @Nullable BakedFace bakeFace(Element element, Direction faceDir, int[] cornerIndices) {
+            Face face = element.getFaces().get(faceDir);
+            if (face == null) return null;
+
+            Vector3i faceDirVector = faceDir.toVector();
+
+            // positions
+            float[] positions = new float[12];
+            for (int i = 0; i < 4; i++) {
+                VectorM3f corner = corners[cornerIndices[i]];
+                vector.set(corner.x, corner.y, corner.z).transform(elementTransform);
+                if (variant.isRotated()) vector.transform(variantTransform);
+                positions[i * 3    ] = vector.x;
+                positions[i * 3 + 1] = vector.y;
+                positions[i * 3 + 2] = vector.z;
+            }
+
+            // texture
+            ResourcePath<Texture> texturePath = face.getTexture().getTexturePath(model.getTextures()::get);
+            Texture texture = texturePath != null ? texturePath.getResource(resourcePack::getTexture) : null;
+
+            // uvs
+            Vector4f uvRaw = face.getUv();
+            float
+                    uvx = uvRaw.getX() / 16f,
+                    uvy = uvRaw.getY() / 16f,
+                    uvz = uvRaw.getZ() / 16f,
+                    uvw = uvRaw.getW() / 16f;
+
+            rawUvs[0].set(uvx, uvw);
+            rawUvs[1].set(uvz, uvw);
+            rawUvs[2].set(uvz, uvy);
+            rawUvs[3].set(uvx, uvy);
+
+            // face-rotation
+            int rotationSteps = Math.floorDiv(face.getRotation(), 90) % 4;
+            if (rotationSteps < 0) rotationSteps += 4;
+
+            // UV-Lock counter-rotation
+            float uvRotation = 0f;
+            if (variant.isUvlock() && variant.isRotated()) {
+                float xRotSin = TrigMath.sin(variant.getX() * TrigMath.DEG_TO_RAD);
+                float xRotCos = TrigMath.cos(variant.getX() * TrigMath.DEG_TO_RAD);
+
+                uvRotation =
+                        variant.getY() * (faceDirVector.getY() * xRotCos + faceDirVector.getZ() * xRotSin) +
+                        variant.getX() * (1 - faceDirVector.getY());
+            }
+
+            float cx = 1f, cy = 0f;
+            if (uvRotation != 0) {
+                uvRotation = (float)(uvRotation * TrigMath.DEG_TO_RAD);
+                cx = TrigMath.cos(uvRotation);
+                cy = TrigMath.sin(uvRotation);
+            }
+
+            float[] uvs = new float[8];
+            for (int i = 0; i < 4; i++) {
+                VectorM2f uv = rawUvs[(rotationSteps + i) % 4];
+                if (uvRotation != 0) {
+                    uv.translate(-0.5f, -0.5f);
+                    uv.rotate(cx, cy);
+                    uv.translate(0.5f, 0.5f);
+                }
+                uvs[i * 2    ] = uv.x;
+                uvs[i * 2 + 1] = uv.y;
+            }
+
+            // facing
+            vector.set(faceDirVector.getX(), faceDirVector.getY(), faceDirVector.getZ());
+            vector.rotateAndScale(element.getRotation().getMatrix());
+            makeRotationRelative(vector);
+            boolean facingUp = vector.y > 0.01;
+
+            // neighbors
+            Vector3i lightNeighbor = getRotationRelative(faceDirVector.getX(), faceDirVector.getY(), faceDirVector.getZ());
+
+            int cullNeighborBit = -1;
+            Direction cullface = face.getCullface();
+            if (cullface != null) {
+                Vector3i cullfaceVector = cullface.toVector();
+                cullNeighborBit = neighborBit(getRotationRelative(cullfaceVector.getX(), cullfaceVector.getY(), cullfaceVector.getZ()));
+            }
+
+            int[] aoNeighborMasks = new int[4 * BakedFace.AO_MASK_LAYERS];
+            for (int i = 0; i < 4; i++) {
+                for (Vector3i aoNeighbor : getAoNeighbors(corners[cornerIndices[i]], faceDirVector)) {
+                    int bit = 1 << neighborBit(aoNeighbor);
+
+                    // put the bit into the first layer that doesn't have it yet to keep the multiplicity
+                    int layer = i * BakedFace.AO_MASK_LAYERS;
+                    while ((aoNeighborMasks[layer] & bit) != 0) layer++;
+                    aoNeighborMasks[layer] |= bit;
+                }
+            }
+
+            return new BakedFace(
+                    positions, uvs,
+                    texturePath, texture,
+                    face.getTintindex(), facingUp,
+                    lightNeighbor, cullNeighborBit,
+                    aoNeighborMasks
+            );
+        }
+
+        private int neighborBit(Vector3i offset) {
+            return BlockNeighborhood.neighborBit(offset.getX(), offset.getY(), offset.getZ());
+        }
+
+        private Vector3i[] getAoNeighbors(VectorM3f vertex, Vector3i dirVec) {
+            int x = 0;
+            if (vertex.x == 16){
+                x = 1;
+            } else if (vertex.x == 0){
+                x = -1;
+            }
+
+            int y = 0;
+            if (vertex.y == 16){
+                y = 1;
+            } else if (vertex.y == 0){
+                y = -1;
+            }
+
+            int z = 0;
+            if (vertex.z == 16){
+                z = 1;
+            } else if (vertex.z == 0){
+                z = -1;
+            }
+
+            List<Vector3i> neighbors = new ArrayList<>(4);
+
+            if (x * dirVec.getX() + y * dirVec.getY() > 0)
+                neighbors.add(getRotationRelative(x, y, 0));
+
+            if (x * dirVec.getX() + z * dirVec.getZ() > 0)
+                neighbors.add(getRotationRelative(x, 0, z));
+
+            if (y * dirVec.getY() + z * dirVec.getZ() > 0)
+                neighbors.add(getRotationRelative(0, y, z));
+
+            if (x * dirVec.getX() + y * dirVec.getY() + z * dirVec.getZ() > 0)
+                neighbors.add(getRotationRelative(x, y, z));
+
+            return neighbors.toArray(Vector3i[]::new);
+        }
+
+        private Vector3i getRotationRelative(int dx, int dy, int dz) {
+            vector.set(dx, dy, dz);
+            makeRotationRelative(vector);
+
+            return new Vector3i(
+                    Math.round(vector.x),
+                    Math.round(vector.y),
+                    Math.round(vector.z)
+            );
+        }
+
+        private void makeRotationRelative(VectorM3f direction){
+            if (variant.isRotated())
+                direction.transform(variant.getRotationMatrix());
+        }
+
+    }
+
+}
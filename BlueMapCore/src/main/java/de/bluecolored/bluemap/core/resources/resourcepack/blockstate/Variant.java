@@ -32,6 +32,7 @@
 import de.bluecolored.bluemap.core.resources.AbstractTypeAdapterFactory;
 import de.bluecolored.bluemap.core.resources.ResourcePath;
 import de.bluecolored.bluemap.core.resources.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.resources.resourcepack.blockmodel.BakedModel;
 import de.bluecolored.bluemap.core.resources.resourcepack.blockmodel.BlockModel;
 import de.bluecolored.bluemap.core.util.math.MatrixM3f;
 
@@ -49,6 +50,7 @@ public class Variant {
 
     private transient boolean rotated;
     private transient MatrixM3f rotationMatrix;
+    private transient BakedModel bakedModel = BakedModel.EMPTY;
 
     private Variant(){}
 
@@ -85,6 +87,14 @@ public MatrixM3f getRotationMatrix() {
         return rotationMatrix;
     }
 
+    public BakedModel getBakedModel() {
+        return bakedModel;
+    }
+
+    public synchronized void bake(ResourcePack resourcePack) {
+        this.bakedModel = BakedModel.bake(this, resourcePack);
+    }
+
     static class Adapter extends AbstractTypeAdapterFactory<Variant> {
 
         public Adapter() {
@@ -39,6 +39,12 @@ public interface MapStorage {
      */
     GridStorage lowresTiles(int lod);
 
+    /**
+     * Returns the {@link GridStorage} holding the maps lowres-tiles of the given lod level in the binary format.<br>
+     * Other than the PNG-tiles of {@link #lowresTiles(int)}, these are compressed with the maps compression.
+     */
+    GridStorage lowresBinaryTiles(int lod);
+
     /**
      * Returns a {@link SingleItemStorage} for a map asset with the given name
      */
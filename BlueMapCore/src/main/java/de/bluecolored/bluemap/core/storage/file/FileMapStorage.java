@@ -52,7 +52,8 @@ public FileMapStorage(Path root, Compression compression) {
         super(
                 compression,
                 ".prbm",
-                ".png"
+                ".png",
+                ".lrbm"
         );
         this.root = root;
     }
@@ -46,8 +46,9 @@ public abstract class PathBasedMapStorage implements MapStorage {
 
     private final GridStorage hiresGridStorage;
     private final LoadingCache<Integer, GridStorage> lowresGridStorages;
+    private final LoadingCache<Integer, GridStorage> lowresBinaryGridStorages;
 
-    public PathBasedMapStorage(Compression compression, String hiresSuffix, String lowresSuffix) {
+    public PathBasedMapStorage(Compression compression, String hiresSuffix, String lowresSuffix, String lowresBinarySuffix) {
         this.hiresGridStorage = new PathBasedGridStorage(
                 this,
                 Path.of("tiles", "0"),
@@ -61,6 +62,13 @@ public PathBasedMapStorage(Compression compression, String hiresSuffix, String l
                 lowresSuffix,
                 Compression.NONE
         ));
+
+        this.lowresBinaryGridStorages = Caffeine.newBuilder().build(lod -> new PathBasedGridStorage(
+                this,
+                Path.of("tiles", String.valueOf(lod)),
+                lowresBinarySuffix + compression.getFileSuffix(),
+                compression
+        ));
     }
 
     @Override
@@ -73,6 +81,11 @@ public GridStorage lowresTiles(int lod) {
         return lowresGridStorages.get(lod);
     }
 
+    @Override
+    public GridStorage lowresBinaryTiles(int lod) {
+        return lowresBinaryGridStorages.get(lod);
+    }
+
     public Path getAssetPath(String name) {
         String[] parts = MapStorage.escapeAssetName(name)
                 .split("/");
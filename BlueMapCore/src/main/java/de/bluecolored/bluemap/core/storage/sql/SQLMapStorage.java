@@ -43,11 +43,18 @@ public class SQLMapStorage implements MapStorage {
     public static final String MARKERS_META_NAME = "live/markers.json";
     public static final String PLAYERS_META_NAME = "live/players.json";
 
+    /**
+     * The tiles are keyed by map, lod and position only, so the binary lowres-tiles are stored with their lod
+     * shifted by this offset to keep them apart from the PNG lowres-tiles of the same lod.
+     */
+    public static final int LOWRES_BINARY_LOD_OFFSET = 1000;
+
     private final String mapId;
     private final CommandSet sql;
 
     private final SQLTileStorage hiresTileStorage;
     private final LoadingCache<Integer, GridStorage> lowresGridStorages;
+    private final LoadingCache<Integer, GridStorage> lowresBinaryGridStorages;
 
     private final SingleItemStorage renderStateStorage;
     private final SingleItemStorage settingsStorage;
@@ -73,6 +80,13 @@ public SQLMapStorage(String mapId, CommandSet sql, Compression compression) {
                 Compression.NONE
         ));
 
+        this.lowresBinaryGridStorages = Caffeine.newBuilder().build(lod -> new SQLTileStorage(
+                sql,
+                mapId,
+                lod + LOWRES_BINARY_LOD_OFFSET,
+                compression
+        ));
+
         renderStateStorage = meta(RENDER_STATE_META_NAME, Compression.NONE);
         settingsStorage = meta(SETTINGS_META_NAME, Compression.NONE);
         texturesStorage = meta(TEXTURES_META_NAME, Compression.NONE);
@@ -90,6 +104,11 @@ public GridStorage lowresTiles(int lod) {
         return lowresGridStorages.get(lod);
     }
 
+    @Override
+    public GridStorage lowresBinaryTiles(int lod) {
+        return lowresBinaryGridStorages.get(lod);
+    }
+
     public String getAssetMetaName(String assetName) {
         return "assets/" + MapStorage.escapeAssetName(assetName);
     }
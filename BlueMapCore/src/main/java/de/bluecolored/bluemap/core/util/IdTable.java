@@ -0,0 +1,82 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * A lookup-table for values that are indexed by a dense id (e.g. {@link de.bluecolored.bluemap.core.world.BlockState#getId()}).<br>
+ * Missing values are calculated on first access using the loader-function, the table grows as needed.<br>
+ * <br>
+ * <i>This class is thread-save.</i>
+ */
+public class IdTable<T> {
+
+    private final IntFunction<T> loader;
+    private volatile AtomicReferenceArray<T> values;
+
+    public IdTable(IntFunction<T> loader) {
+        this(loader, 1024);
+    }
+
+    public IdTable(IntFunction<T> loader, int initialCapacity) {
+        this.loader = loader;
+        this.values = new AtomicReferenceArray<>(initialCapacity);
+    }
+
+    public T get(int id) {
+        AtomicReferenceArray<T> values = this.values;
+        if (id < values.length()) {
+            T value = values.get(id);
+            if (value != null) return value;
+        }
+
+        T value = loader.apply(id);
+        if (value != null) set(id, value);
+        return value;
+    }
+
+    private synchronized void set(int id, T value) {
+        AtomicReferenceArray<T> values = this.values;
+        if (id >= values.length()) {
+            int newLength = Math.max(values.length(), 16);
+            while (id >= newLength) newLength *= 2;
+
+            AtomicReferenceArray<T> newValues = new AtomicReferenceArray<>(newLength);
+            for (int i = 0; i < values.length(); i++)
+                newValues.set(i, values.get(i));
+
+            this.values = values = newValues;
+        }
+
+        values.set(id, value);
+    }
+
+    public synchronized void clear() {
+        this.values = new AtomicReferenceArray<>(this.values.length());
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A minimal and fast PNG-encoder for 8-bit RGBA images that are given as an int-array of ARGB pixels.<br>
+ * The encoder keeps its {@link Deflater} and all row-buffers, so one instance should be reused for many images.
+ * It is <b>not</b> thread-safe, use one instance per thread.
+ */
+public class PNGEncoder {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[]
+            CHUNK_IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII),
+            CHUNK_IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII),
+            CHUNK_IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+
+    private static final RowFilter[] FILTERS = RowFilter.values();
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int IDAT_CHUNK_SIZE = 0x10000;
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+
+    private final byte[] chunkHeader = new byte[8];
+    private final byte[] ihdr = new byte[13];
+    private final byte[] idat = new byte[IDAT_CHUNK_SIZE];
+    private int idatLength;
+
+    private byte[] currentRow = new byte[0], previousRow = new byte[0];
+    private final byte[][] filteredRows = new byte[RowFilter.ADAPTIVE.ordinal()][0];
+
+    public PNGEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public PNGEncoder(int compressionLevel) {
+        this.deflater = new Deflater(compressionLevel);
+    }
+
+    /**
+     * Sets the deflate-level (0-9 or {@link Deflater#DEFAULT_COMPRESSION}) that is used for all following images
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        deflater.setLevel(compressionLevel);
+    }
+
+    /**
+     * Writes the given ARGB pixels (row by row) as a PNG to the given stream, using the same filter for all rows.
+     */
+    public void write(int[] argb, int width, int height, RowFilter filter, OutputStream out) throws IOException {
+        write(argb, width, height, row -> filter, out);
+    }
+
+    /**
+     * Writes the given ARGB pixels (row by row) as a PNG to the given stream, using the {@link RowFilter} that the
+     * selector returns for each row.
+     */
+    public void write(int[] argb, int width, int height, RowFilterSelector filterSelector, OutputStream out) throws IOException {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Image size must be positive");
+        if (argb.length < width * height) throw new IllegalArgumentException("Pixel-array is too small for the image size");
+
+        int rowLength = width * BYTES_PER_PIXEL;
+        if (currentRow.length != rowLength) {
+            currentRow = new byte[rowLength];
+            previousRow = new byte[rowLength];
+            for (int i = 0; i < filteredRows.length; i++)
+                filteredRows[i] = new byte[rowLength + 1];
+        }
+
+        out.write(SIGNATURE);
+
+        // header
+        writeInt(ihdr, 0, width);
+        writeInt(ihdr, 4, height);
+        ihdr[8] = 8; // bit-depth
+        ihdr[9] = 6; // color-type: RGBA
+        ihdr[10] = 0; // compression-method: deflate
+        ihdr[11] = 0; // filter-method: adaptive
+        ihdr[12] = 0; // interlace-method: none
+        writeChunk(out, CHUNK_IHDR, ihdr, 13);
+
+        // data
+        deflater.reset();
+        idatLength = 0;
+
+        Arrays.fill(previousRow, (byte) 0);
+        for (int y = 0; y < height; y++) {
+            int p = y * width;
+            for (int i = 0; i < rowLength; i += BYTES_PER_PIXEL, p++) {
+                int pixel = argb[p];
+                currentRow[i    ] = (byte) (pixel >> 16);
+                currentRow[i + 1] = (byte) (pixel >> 8);
+                currentRow[i + 2] = (byte) pixel;
+                currentRow[i + 3] = (byte) (pixel >>> 24);
+            }
+
+            byte[] filtered = filterRow(filterSelector.select(y), rowLength);
+            deflater.setInput(filtered, 0, rowLength + 1);
+            while (!deflater.needsInput()) deflate(out);
+
+            byte[] swap = previousRow;
+            previousRow = currentRow;
+            currentRow = swap;
+        }
+
+        deflater.finish();
+        while (!deflater.finished()) deflate(out);
+        if (idatLength > 0) writeChunk(out, CHUNK_IDAT, idat, idatLength);
+
+        writeChunk(out, CHUNK_IEND, idat, 0);
+    }
+
+    private byte[] filterRow(RowFilter filter, int rowLength) {
+        if (filter != RowFilter.ADAPTIVE) {
+            byte[] target = filteredRows[filter.ordinal()];
+            filter(filter, target, rowLength);
+            return target;
+        }
+
+        // minimum sum of absolute differences
+        byte[] best = null;
+        long bestSum = Long.MAX_VALUE;
+        for (int f = 0; f < filteredRows.length; f++) {
+            byte[] target = filteredRows[f];
+            long sum = filter(FILTERS[f], target, rowLength);
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = target;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Applies the filter to the current row, writes the filter-type and the filtered row to the target and
+     * returns the sum of the absolute (signed) values of the filtered bytes
+     */
+    private long filter(RowFilter filter, byte[] target, int rowLength) {
+        final byte[] cur = currentRow, prev = previousRow;
+        target[0] = (byte) filter.ordinal();
+
+        long sum = 0;
+        int i = 0, a, b, c, v;
+        switch (filter) {
+            case NONE:
+                for (; i < rowLength; i++) {
+                    v = cur[i];
+                    target[i + 1] = (byte) v;
+                    sum += Math.abs(v);
+                }
+                break;
+            case SUB:
+                for (; i < BYTES_PER_PIXEL; i++) {
+                    v = cur[i];
+                    target[i + 1] = (byte) v;
+                    sum += Math.abs(v);
+                }
+                for (; i < rowLength; i++) {
+                    v = (byte) (cur[i] - cur[i - BYTES_PER_PIXEL]);
+                    target[i + 1] = (byte) v;
+                    sum += Math.abs(v);
+                }
+                break;
+            case UP:
+                for (; i < rowLength; i++) {
+                    v = (byte) (cur[i] - prev[i]);
+                    target[i + 1] = (byte) v;
+                    sum += Math.abs(v);
+                }
+                break;
+            case AVERAGE:
+                for (; i < BYTES_PER_PIXEL; i++) {
+                    v = (byte) (cur[i] - ((prev[i] & 0xFF) >> 1));
+                    target[i + 1] = (byte) v;
+                    sum += Math.abs(v);
+                }
+                for (; i < rowLength; i++) {
+                    v = (byte) (cur[i] - (((cur[i - BYTES_PER_PIXEL] & 0xFF) + (prev[i] & 0xFF)) >> 1));
+                    target[i + 1] = (byte) v;
+                    sum += Math.abs(v);
+                }
+                break;
+            case PAETH:
+                for (; i < BYTES_PER_PIXEL; i++) {
+                    v = (byte) (cur[i] - prev[i]);
+                    target[i + 1] = (byte) v;
+                    sum += Math.abs(v);
+                }
+                for (; i < rowLength; i++) {
+                    a = cur[i - BYTES_PER_PIXEL] & 0xFF;
+                    b = prev[i] & 0xFF;
+                    c = prev[i - BYTES_PER_PIXEL] & 0xFF;
+                    v = (byte) (cur[i] - paeth(a, b, c));
+                    target[i + 1] = (byte) v;
+                    sum += Math.abs(v);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Not a concrete filter: " + filter);
+        }
+
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        if (pb <= pc) return b;
+        return c;
+    }
+
+    private void deflate(OutputStream out) throws IOException {
+        idatLength += deflater.deflate(idat, idatLength, idat.length - idatLength);
+        if (idatLength == idat.length) {
+            writeChunk(out, CHUNK_IDAT, idat, idatLength);
+            idatLength = 0;
+        }
+    }
+
+    private void writeChunk(OutputStream out, byte[] type, byte[] data, int length) throws IOException {
+        writeInt(chunkHeader, 0, length);
+        System.arraycopy(type, 0, chunkHeader, 4, 4);
+        out.write(chunkHeader, 0, 8);
+        out.write(data, 0, length);
+
+        crc.reset();
+        crc.update(type, 0, 4);
+        crc.update(data, 0, length);
+        writeInt(chunkHeader, 0, (int) crc.getValue());
+        out.write(chunkHeader, 0, 4);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset    ] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /**
+     * The PNG row-filters.<br>
+     * {@link #ADAPTIVE} tries all filters on each row and picks the one with the smallest sum of absolute differences,
+     * which usually compresses best for photo-like content but costs about five times the filtering work.
+     */
+    public enum RowFilter {
+        NONE,
+        SUB,
+        UP,
+        AVERAGE,
+        PAETH,
+        ADAPTIVE
+    }
+
+    @FunctionalInterface
+    public interface RowFilterSelector {
+        RowFilter select(int row);
+    }
+
+}
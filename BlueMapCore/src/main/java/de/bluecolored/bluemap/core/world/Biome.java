@@ -27,12 +27,28 @@
 import de.bluecolored.bluemap.api.debug.DebugDump;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.util.math.Color;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Biomes are identified by their formatted key, and each key also has a dense global {@link #getId() id}.<br>
+ * Those ids do not depend on any resource-pack, so chunks can resolve their biome-palettes to ids once when they are
+ * loaded, and the {@link Biome} for an id can then be looked up by array-index.
+ */
 @DebugDump
 public class Biome extends Key {
 
+    // needs to be initialized before DEFAULT
+    private static final ConcurrentHashMap<String, Integer> ID_POOL = new ConcurrentHashMap<>();
+    private static volatile String[] idLookup = new String[64];
+    private static int nextId = 0;
+
     public static final Biome DEFAULT = new Biome("minecraft:ocean");
 
+    private final int id;
+
     private float humidity = 0.5f;
     private float temp = 0.5f;
     private final Color waterColor = new Color().set(4159204 | 0xFF000000).premultiplied();
@@ -42,6 +58,7 @@ public class Biome extends Key {
 
     public Biome(String formatted) {
         super(formatted);
+        this.id = idOf(getFormatted());
     }
 
     public Biome(String formatted, float humidity, float temp, Color waterColor) {
@@ -57,6 +74,13 @@ public Biome(String formatted, float humidity, float temp, Color waterColor, Col
         this.overlayGrassColor.set(overlayGrassColor).premultiplied();
     }
 
+    /**
+     * The dense global id of this biome's key, see {@link #idOf(String)}
+     */
+    public int getId() {
+        return id;
+    }
+
     public float getHumidity() {
         return humidity;
     }
@@ -77,10 +101,44 @@ public Color getOverlayGrassColor() {
         return overlayGrassColor;
     }
 
+    /**
+     * Returns the dense global id for the biome with the given formatted key (e.g. "minecraft:plains").<br>
+     * The key is registered and gets a new id if it has none yet.
+     */
+    public static int idOf(String formatted) {
+        Integer id = ID_POOL.get(formatted);
+        if (id != null) return id;
+        return register(formatted);
+    }
+
+    /**
+     * Returns the formatted key of the biome with the given id, or null if there is no biome with this id.
+     */
+    public static @Nullable String formattedById(int id) {
+        String[] idLookup = Biome.idLookup;
+        if (id < 0 || id >= idLookup.length) return null;
+        return idLookup[id];
+    }
+
+    private static synchronized int register(String formatted) {
+        Integer id = ID_POOL.get(formatted);
+        if (id != null) return id;
+
+        int newId = nextId++;
+        String[] idLookup = Biome.idLookup;
+        if (newId >= idLookup.length) idLookup = Arrays.copyOf(idLookup, idLookup.length * 2);
+        idLookup[newId] = formatted;
+
+        Biome.idLookup = idLookup;
+        ID_POOL.put(formatted, newId);
+        return newId;
+    }
+
     @Override
     public String toString() {
         return "Biome{" +
-               "value='" + getValue() + '\'' +
+               "id=" + id +
+               ", value='" + getValue() + '\'' +
                ", namespace=" + getNamespace() +
                ", formatted=" + getFormatted() +
                ", humidity=" + humidity +
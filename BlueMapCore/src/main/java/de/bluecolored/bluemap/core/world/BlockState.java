@@ -30,6 +30,7 @@
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,6 +38,9 @@
  * Represents a BlockState<br>
  * It is important that {@link #hashCode} and {@link #equals} are implemented correctly, for the caching to work properly.<br>
  * <br>
+ * BlockStates can be {@link #intern() interned}, interned BlockStates are unique and have a dense global {@link #getId() id}
+ * which can be used to look up block-state related data in plain arrays.<br>
+ * <br>
  * <i>The implementation of this class has to be thread-save!</i><br>
  */
 @DebugDump
@@ -44,12 +48,18 @@ public class BlockState extends Key {
 
     private static final Pattern BLOCKSTATE_SERIALIZATION_PATTERN = Pattern.compile("^(.+?)(?:\\[(.*)])?$");
 
-    public static final BlockState AIR = new BlockState("minecraft:air");
-    public static final BlockState MISSING = new BlockState("bluemap:missing");
+    private static final ConcurrentHashMap<BlockState, BlockState> INTERN_POOL = new ConcurrentHashMap<>();
+    private static volatile BlockState[] idLookup = new BlockState[1024];
+    private static int nextId = 0;
+
+    public static final BlockState AIR = new BlockState("minecraft:air").intern();
+    public static final BlockState MISSING = new BlockState("bluemap:missing").intern();
 
     private boolean hashed;
     private int hash;
 
+    private int id = -1;
+
     private final Map<String, String> properties;
     private final Property[] propertiesArray;
 
@@ -137,6 +147,50 @@ public int getRedstonePower() {
         return redstonePower;
     }
 
+    /**
+     * Returns the unique interned instance of this BlockState.<br>
+     * If there is no interned BlockState equal to this one yet, this instance will be interned and assigned a new id.
+     */
+    public BlockState intern() {
+        BlockState interned = INTERN_POOL.get(this);
+        if (interned != null) return interned;
+        return register(this);
+    }
+
+    /**
+     * The dense global id of this BlockState.<br>
+     * All BlockStates that are {@link #equals equal} have the same id, and the id of an interned BlockState
+     * can be resolved back to it using {@link #byId(int)}.
+     */
+    public int getId() {
+        if (id == -1) id = intern().id;
+        return id;
+    }
+
+    /**
+     * Returns the interned BlockState with the given id, or null if there is no BlockState with this id.
+     */
+    public static BlockState byId(int id) {
+        BlockState[] idLookup = BlockState.idLookup;
+        if (id < 0 || id >= idLookup.length) return null;
+        return idLookup[id];
+    }
+
+    private static synchronized BlockState register(BlockState blockState) {
+        BlockState interned = INTERN_POOL.get(blockState);
+        if (interned != null) return interned;
+
+        int id = nextId++;
+        BlockState[] idLookup = BlockState.idLookup;
+        if (id >= idLookup.length) idLookup = Arrays.copyOf(idLookup, idLookup.length * 2);
+        idLookup[id] = blockState;
+        blockState.id = id;
+
+        BlockState.idLookup = idLookup;
+        INTERN_POOL.put(blockState, blockState);
+        return blockState;
+    }
+
     @SuppressWarnings("StringEquality")
     @Override
     public boolean equals(Object obj) {
@@ -144,6 +198,7 @@ public boolean equals(Object obj) {
 
         if (!(obj instanceof BlockState)) return false;
         BlockState b = (BlockState) obj;
+        if (id != -1 && b.id != -1) return id == b.id;
         if (getFormatted() != b.getFormatted()) return false;
         return Arrays.equals(propertiesArray, b.propertiesArray);
     }
@@ -29,7 +29,12 @@
 
 public interface Chunk {
 
-    Chunk EMPTY_CHUNK = new Chunk() {};
+    Chunk EMPTY_CHUNK = new Chunk() {
+        @Override
+        public BlockState getUniformSectionBlockState(int sectionY) {
+            return BlockState.AIR;
+        }
+    };
 
     default boolean isGenerated() {
         return false;
@@ -47,12 +52,32 @@ default BlockState getBlockState(int x, int y, int z) {
         return BlockState.AIR;
     }
 
+    /**
+     * Returns the {@link BlockState} that <b>all</b> blocks in the 16x16x16 section at the given section-y have,
+     * or null if the section contains different blocks (or if this is unknown).<br>
+     * This can be used to quickly skip over whole sections e.g. if they only contain air.
+     */
+    default @Nullable BlockState getUniformSectionBlockState(int sectionY) {
+        return null;
+    }
+
+    /**
+     * Returns an estimation of the heap-memory in bytes that is retained by this chunk.<br>
+     * Objects that are shared between chunks (like interned block-states) are not counted.
+     */
+    default long getMemorySize() {
+        return 0;
+    }
+
     default LightData getLightData(int x, int y, int z, LightData target) {
         return target.set(0, 0);
     }
 
-    default String getBiome(int x, int y, int z) {
-        return Biome.DEFAULT.getFormatted();
+    /**
+     * Returns the {@link Biome#getId() id} of the biome at the given position
+     */
+    default int getBiomeId(int x, int y, int z) {
+        return Biome.DEFAULT.getId();
     }
 
     default int getMaxY(int x, int z) {
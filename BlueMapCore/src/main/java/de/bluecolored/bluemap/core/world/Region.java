@@ -61,4 +61,32 @@ public void accept(int chunkX, int chunkZ, Chunk chunk) {
      */
     void iterateAllChunks(ChunkConsumer consumer) throws IOException;
 
+    /**
+     * Keeps the data that this region needs to load its chunks in memory until the returned {@link Pin} is closed,
+     * e.g. while the region is being rendered and its chunks are loaded one after another.<br>
+     * This is only relevant for linear regions: they decompress the whole region-file at once and otherwise only keep
+     * that data in a shared cache as long as its memory-limit allows. Mca-regions read each chunk directly from their
+     * open file, so pinning them does nothing.
+     */
+    default Pin pin() {
+        return Pin.NONE;
+    }
+
+    /**
+     * Releases all resources that this region is holding on to, like the open {@link java.nio.channels.FileChannel}
+     * of a mca-region or the entry of a linear region in the shared cache of decompressed region-data.<br>
+     * This is called when the region is no longer cached, the region itself stays usable, it will just re-acquire
+     * those resources if it is used again.
+     */
+    default void close() {}
+
+    interface Pin extends AutoCloseable {
+
+        Pin NONE = () -> {};
+
+        @Override
+        void close();
+
+    }
+
 }
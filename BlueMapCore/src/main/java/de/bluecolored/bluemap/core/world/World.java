@@ -26,9 +26,11 @@
 
 import com.flowpowered.math.vector.Vector2i;
 import com.flowpowered.math.vector.Vector3i;
+import com.github.benmanes.caffeine.cache.Cache;
 import de.bluecolored.bluemap.core.util.Grid;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * Represents a World on the Server.<br>
@@ -72,9 +74,11 @@ public interface World {
     Collection<Vector2i> listRegions();
 
     /**
-     * Loads all chunks from the specified region into the chunk cache (if there is a cache)
+     * Makes sure that the blocks in the given (inclusive) y-range are loaded for all chunks of this world.<br>
+     * Implementations may skip decoding the parts of a chunk that are outside of all requested ranges. As long as no
+     * range has been requested, chunks are always loaded completely.
      */
-    void preloadRegionChunks(int x, int z);
+    default void requestHeightRange(int minY, int maxY) {}
 
     /**
      * Invalidates the complete chunk cache (if there is a cache), so that every chunk has to be reloaded from disk
@@ -91,4 +95,12 @@ public interface World {
      */
     void cleanUpChunkCache();
 
+    /**
+     * Returns the caches of this world mapped by a name (e.g. "chunks"), so their statistics can be inspected.<br>
+     * The caches should only be used for monitoring, not to modify their content.
+     */
+    default Map<String, Cache<?, ?>> getCaches() {
+        return Map.of();
+    }
+
 }
@@ -40,7 +40,7 @@
 
     private BlockState blockState;
     private final LightData lightData = new LightData(-1, -1);
-    private String biomeId;
+    private int biomeId;
 
     public Block(World world, int x, int y, int z) {
         set(world, x, y, z);
@@ -82,7 +82,7 @@ public T set(int x, int y, int z) {
     protected void reset() {
         this.blockState = null;
         this.lightData.set(-1, -1);
-        this.biomeId = null;
+        this.biomeId = -1;
     }
 
     public T add(int dx, int dy, int dz) {
@@ -122,25 +122,37 @@ public int getZ() {
     }
 
     public Chunk getChunk() {
-        if (chunk == null) chunk = world.getChunkAtBlock(x, z);
+        if (chunk == null) chunk = loadChunk();
         return chunk;
     }
 
     public BlockState getBlockState() {
-        if (blockState == null) blockState = getChunk().getBlockState(x, y, z);
+        if (blockState == null) blockState = loadBlockState();
         return blockState;
     }
 
     public LightData getLightData() {
-        if (lightData.getSkyLight() < 0) getChunk().getLightData(x, y, z, lightData);
+        if (lightData.getSkyLight() < 0) loadLightData(lightData);
         return lightData;
     }
 
-    public String getBiomeId() {
-        if (biomeId == null) biomeId = getChunk().getBiome(x, y, z);
+    public int getBiomeId() {
+        if (biomeId < 0) biomeId = getChunk().getBiomeId(x, y, z);
         return biomeId;
     }
 
+    protected Chunk loadChunk() {
+        return world.getChunkAtBlock(x, z);
+    }
+
+    protected BlockState loadBlockState() {
+        return getChunk().getBlockState(x, y, z);
+    }
+
+    protected void loadLightData(LightData target) {
+        getChunk().getLightData(x, y, z, target);
+    }
+
     public int getSunLightLevel() {
         return getLightData().getSkyLight();
     }
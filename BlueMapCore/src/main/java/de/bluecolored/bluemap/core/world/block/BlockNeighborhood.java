@@ -25,8 +25,11 @@
 package de.bluecolored.bluemap.core.world.block;
 
 import de.bluecolored.bluemap.core.map.hires.RenderSettings;
+import de.bluecolored.bluemap.core.map.hires.TileVoxelVolume;
 import de.bluecolored.bluemap.core.resources.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.world.BlockProperties;
 import de.bluecolored.bluemap.core.world.World;
+import org.jetbrains.annotations.Nullable;
 
 public class BlockNeighborhood<T extends BlockNeighborhood<T>> extends ExtendedBlock<T> {
 
@@ -34,10 +37,14 @@
     private static final int DIAMETER_MASK = DIAMETER - 1;
     private static final int DIAMETER_SQUARED = DIAMETER * DIAMETER;
 
+    private static final int CENTER_BIT = neighborBit(0, 0, 0);
+
     private final ExtendedBlock<?>[] neighborhood;
 
     private int thisIndex;
 
+    private int occludingMask, cullingMask;
+
     public BlockNeighborhood(ExtendedBlock<?> center) {
         super(center.getResourcePack(), center.getRenderSettings(), null, 0, 0, 0);
         copy(center);
@@ -66,15 +73,27 @@ public T set(World world, int x, int y, int z) {
             return super.set(world, x, y, z);
     }
 
+    @Override
+    public T setVolume(@Nullable TileVoxelVolume volume) {
+        for (ExtendedBlock<?> block : neighborhood) {
+            block.setVolume(volume);
+        }
+        return super.setVolume(volume);
+    }
+
     @Override
     protected void reset() {
         super.reset();
 
         this.thisIndex = -1;
+        this.occludingMask = -1;
+        this.cullingMask = -1;
     }
 
     private void init() {
         this.thisIndex = -1;
+        this.occludingMask = -1;
+        this.cullingMask = -1;
         for (int i = 0; i < neighborhood.length; i++) {
             neighborhood[i] = new ExtendedBlock<>(this.getResourcePack(), this.getRenderSettings(), null, 0, 0, 0);
         }
@@ -88,6 +107,78 @@ public ExtendedBlock<?> getNeighborBlock(int dx, int dy, int dz) {
         );
     }
 
+    /**
+     * A mask with one bit for each of the 26 direct neighbors of this block (see {@link #neighborBit(int, int, int)}),
+     * the bit is set if the neighbor is occluding (for ambient-occlusion).<br>
+     * The mask is calculated once per block position.
+     */
+    public int getOccludingMask() {
+        if (occludingMask == -1) calculateMasks();
+        return occludingMask;
+    }
+
+    /**
+     * A mask with one bit for each of the 6 neighbors that share a face with this block
+     * (see {@link #neighborBit(int, int, int)}), the bit is set if the neighbor culls the face of this block
+     * that is facing it.<br>
+     * The mask is calculated once per block position.
+     */
+    public int getCullingMask() {
+        if (cullingMask == -1) calculateMasks();
+        return cullingMask;
+    }
+
+    private void calculateMasks() {
+        int occluding = 0, culling = 0;
+
+        TileVoxelVolume volume = getVolume();
+        boolean inVolume = volume != null && getVolumeIndex() >= 0;
+        int x = getX(), y = getY(), z = getZ();
+        int thisStateId = getBlockState().getId();
+
+        int dx, dy, dz, bit, index;
+        BlockProperties properties;
+        for (dx = -1; dx <= 1; dx++) {
+            for (dy = -1; dy <= 1; dy++) {
+                for (dz = -1; dz <= 1; dz++) {
+                    bit = neighborBit(dx, dy, dz);
+                    if (bit == CENTER_BIT) continue;
+
+                    // read from the volume directly if possible, this avoids setting up the neighbor-block
+                    index = inVolume ? volume.index(x + dx, y + dy, z + dz) : -1;
+                    int stateId;
+                    if (index >= 0) {
+                        stateId = volume.getBlockStateId(index);
+                        properties = getResourcePack().getBlockProperties(stateId);
+                    } else {
+                        ExtendedBlock<?> neighbor = getNeighborBlock(dx, dy, dz);
+                        stateId = neighbor.getBlockState().getId();
+                        properties = neighbor.getProperties();
+                    }
+
+                    if (properties.isOccluding()) occluding |= 1 << bit;
+
+                    // only direct face-neighbors can cull
+                    if (Math.abs(dx) + Math.abs(dy) + Math.abs(dz) == 1 && (
+                            properties.isCulling() ||
+                            (properties.getCullingIdentical() && stateId == thisStateId)
+                    )) culling |= 1 << bit;
+                }
+            }
+        }
+
+        this.occludingMask = occluding;
+        this.cullingMask = culling;
+    }
+
+    /**
+     * The bit-index that is used for the neighbor with the given offset (each component -1 to 1) in the
+     * masks of {@link #getOccludingMask()} and {@link #getCullingMask()}
+     */
+    public static int neighborBit(int dx, int dy, int dz) {
+        return (dx + 1) * 9 + (dy + 1) * 3 + (dz + 1);
+    }
+
     private ExtendedBlock<?> getBlock(int x, int y, int z) {
         int i = index(x, y, z);
         if (i == thisIndex()) return this;
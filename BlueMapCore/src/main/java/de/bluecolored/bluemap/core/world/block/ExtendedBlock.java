@@ -25,8 +25,10 @@
 package de.bluecolored.bluemap.core.world.block;
 
 import de.bluecolored.bluemap.core.map.hires.RenderSettings;
+import de.bluecolored.bluemap.core.map.hires.TileVoxelVolume;
 import de.bluecolored.bluemap.core.resources.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.world.*;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Objects;
 
@@ -34,6 +36,9 @@
     private final ResourcePack resourcePack;
     private final RenderSettings renderSettings;
 
+    private @Nullable TileVoxelVolume volume;
+    private int volumeIndex;
+
     private BlockProperties properties;
     private Biome biome;
 
@@ -50,6 +55,8 @@ public ExtendedBlock(ResourcePack resourcePack, RenderSettings renderSettings, W
     protected void reset() {
         super.reset();
 
+        this.volumeIndex = -2;
+
         this.properties = null;
         this.biome = null;
 
@@ -60,6 +67,9 @@ protected void reset() {
     public T copy(ExtendedBlock<?> source) {
         super.copy(source);
 
+        this.volume = source.volume;
+        this.volumeIndex = source.volumeIndex;
+
         this.properties = source.properties;
         this.biome = source.biome;
 
@@ -72,26 +82,80 @@ public T copy(ExtendedBlock<?> source) {
         return self();
     }
 
+    /**
+     * Sets a {@link TileVoxelVolume} from which this block will read its data instead of the chunk,
+     * as long as the block is inside the volume.<br>
+     * The volume has to be filled with the same world, resource-pack and render-settings as this block.
+     */
+    public T setVolume(@Nullable TileVoxelVolume volume) {
+        this.volume = volume;
+        reset();
+        return self();
+    }
+
+    /**
+     * The index of this block in the {@link TileVoxelVolume} or -1 if there is no volume or the volume does not contain this block
+     */
+    protected int getVolumeIndex() {
+        if (volumeIndex == -2) volumeIndex = hasVolume() ? volume.index(getX(), getY(), getZ()) : -1;
+        return volumeIndex;
+    }
+
+    /**
+     * The {@link TileVoxelVolume} this block reads its data from, or null if there is none for the world of this block
+     */
+    public @Nullable TileVoxelVolume getVolume() {
+        return hasVolume() ? volume : null;
+    }
+
+    private boolean hasVolume() {
+        return volume != null && volume.getWorld() == getWorld();
+    }
+
     @Override
     public BlockState getBlockState() {
-        if (renderSettings.isRenderEdges() && !isInsideRenderBounds()) return BlockState.AIR;
+        // the volume already has the render-edges applied
+        if (getVolumeIndex() < 0 && renderSettings.isRenderEdges() && !isInsideRenderBounds()) return BlockState.AIR;
         return super.getBlockState();
     }
 
     @Override
     public LightData getLightData() {
         LightData ld = super.getLightData();
-        if (renderSettings.isRenderEdges() && !isInsideRenderBounds()) ld.set(getWorld().getDimensionType().hasSkylight() ? 16 : 0, ld.getBlockLight());
+        if (getVolumeIndex() < 0 && renderSettings.isRenderEdges() && !isInsideRenderBounds()) ld.set(getWorld().getDimensionType().hasSkylight() ? 16 : 0, ld.getBlockLight());
         return ld;
     }
 
+    @Override
+    protected Chunk loadChunk() {
+        if (hasVolume()) return volume.getChunk(getX(), getZ());
+        return super.loadChunk();
+    }
+
+    @Override
+    protected BlockState loadBlockState() {
+        int index = getVolumeIndex();
+        if (index >= 0) return volume.getBlockState(index);
+        return super.loadBlockState();
+    }
+
+    @Override
+    protected void loadLightData(LightData target) {
+        int index = getVolumeIndex();
+        if (index >= 0) volume.getLightData(index, target);
+        else super.loadLightData(target);
+    }
+
     public BlockProperties getProperties() {
         if (properties == null) properties = resourcePack.getBlockProperties(getBlockState());
         return properties;
     }
 
     public Biome getBiome() {
-        if (biome == null) biome = resourcePack.getBiome(getBiomeId());
+        if (biome == null) {
+            int index = getVolumeIndex();
+            biome = index >= 0 ? volume.getBiome(index) : resourcePack.getBiome(getBiomeId());
+        }
         return biome;
     }
 
@@ -30,15 +30,26 @@
 import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
 import de.bluecolored.bluemap.core.world.mca.data.BlockStateDeserializer;
 import de.bluecolored.bluemap.core.world.mca.data.KeyDeserializer;
+import de.bluecolored.bluemap.core.world.mca.data.LazyBlockEntities;
 import de.bluecolored.bluenbt.BlueNBT;
 
 public class MCAUtil {
 
-    public static final BlueNBT BLUENBT = new BlueNBT();
-    static {
-        BLUENBT.register(TypeToken.get(BlockState.class), new BlockStateDeserializer());
-        BLUENBT.register(TypeToken.get(Key.class), new KeyDeserializer());
-        BLUENBT.register(TypeToken.get(BlockEntity.class), new BlockEntity.BlockEntityDeserializer());
+    public static final BlueNBT BLUENBT = createBlueNBT();
+
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int REFERENCE_SIZE = 4;
+
+    /**
+     * Creates a new {@link BlueNBT} instance with all type-deserializers registered that are needed to read minecraft's data.
+     */
+    public static BlueNBT createBlueNBT() {
+        BlueNBT blueNBT = new BlueNBT();
+        blueNBT.register(TypeToken.get(BlockState.class), new BlockStateDeserializer());
+        blueNBT.register(TypeToken.get(Key.class), new KeyDeserializer());
+        blueNBT.register(TypeToken.get(BlockEntity.class), new BlockEntity.BlockEntityDeserializer());
+        blueNBT.register(TypeToken.get(LazyBlockEntities.class), new LazyBlockEntities.Deserializer());
+        return blueNBT;
     }
 
     /**
@@ -85,6 +96,36 @@ public static int getByteHalf(int value, boolean largeHalf) {
         return value & 0xF;
     }
 
+    /**
+     * Estimates the heap-memory in bytes that is retained by the given array.<br>
+     * For object-arrays only the references are counted, since the referenced objects (e.g. interned block-states)
+     * are usually shared.
+     */
+    public static long estimateSize(long[] array) {
+        return ARRAY_HEADER_SIZE + (long) array.length * Long.BYTES;
+    }
+
+    /**
+     * @see #estimateSize(long[])
+     */
+    public static long estimateSize(int[] array) {
+        return ARRAY_HEADER_SIZE + (long) array.length * Integer.BYTES;
+    }
+
+    /**
+     * @see #estimateSize(long[])
+     */
+    public static long estimateSize(byte[] array) {
+        return ARRAY_HEADER_SIZE + array.length;
+    }
+
+    /**
+     * @see #estimateSize(long[])
+     */
+    public static long estimateSize(Object[] array) {
+        return ARRAY_HEADER_SIZE + (long) array.length * REFERENCE_SIZE;
+    }
+
     public static int ceilLog2(int n) {
         return Integer.SIZE - Integer.numberOfLeadingZeros(n - 1);
     }
@@ -26,8 +26,10 @@
 
 import com.flowpowered.math.vector.Vector2i;
 import com.flowpowered.math.vector.Vector3i;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import de.bluecolored.bluemap.api.debug.DebugDump;
 import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
@@ -65,6 +67,14 @@ public class MCAWorld implements World {
 
     private static final Vector2iCache VECTOR_2_I_CACHE = new Vector2iCache();
 
+    /**
+     * The default memory limit for the chunk-cache of a world in bytes
+     */
+    public static final long DEFAULT_CHUNK_CACHE_MEMORY_LIMIT = 256L * 1024L * 1024L;
+
+    // estimated bytes of a chunk-cache entry itself (key, cache-node, chunk-object) that are added to the chunks weight
+    private static final int CHUNK_CACHE_ENTRY_SIZE = 128;
+
     private final String id;
     private final Path worldFolder;
     private final Key dimension;
@@ -77,18 +87,10 @@ public class MCAWorld implements World {
     private final Path regionFolder;
 
     private final ChunkLoader chunkLoader = new ChunkLoader(this);
-    private final LoadingCache<Vector2i, Region> regionCache = Caffeine.newBuilder()
-            .executor(BlueMap.THREAD_POOL)
-            .maximumSize(32)
-            .expireAfterWrite(10, TimeUnit.MINUTES)
-            .build(this::loadRegion);
-    private final LoadingCache<Vector2i, Chunk> chunkCache = Caffeine.newBuilder()
-            .executor(BlueMap.THREAD_POOL)
-            .maximumSize(10240) // 10 regions worth of chunks
-            .expireAfterWrite(10, TimeUnit.MINUTES)
-            .build(this::loadChunk);
-
-    private MCAWorld(Path worldFolder, Key dimension, LevelData levelData, DataPack dataPack) {
+    private final LoadingCache<Vector2i, Region> regionCache;
+    private final LoadingCache<Vector2i, Chunk> chunkCache;
+
+    private MCAWorld(Path worldFolder, Key dimension, LevelData levelData, DataPack dataPack, long chunkCacheMemoryLimit) {
         this.id = id(worldFolder, dimension);
         this.worldFolder = worldFolder;
         this.dimension = dimension;
@@ -122,6 +124,25 @@ private MCAWorld(Path worldFolder, Key dimension, LevelData levelData, DataPack
         );
         this.dimensionFolder = resolveDimensionFolder(worldFolder, dimension);
         this.regionFolder = dimensionFolder.resolve("region");
+
+        // regions only keep their headers (or a reference to their shared data) on the heap, so they are limited by count
+        this.regionCache = Caffeine.newBuilder()
+                .executor(BlueMap.THREAD_POOL)
+                .maximumSize(32)
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .removalListener((Vector2i pos, Region region, RemovalCause cause) -> {
+                    if (region != null) region.close();
+                })
+                .recordStats()
+                .build(this::loadRegion);
+        this.chunkCache = Caffeine.newBuilder()
+                .executor(BlueMap.THREAD_POOL)
+                .maximumWeight(chunkCacheMemoryLimit)
+                .weigher((Vector2i pos, Chunk chunk) ->
+                        (int) Math.min(chunk.getMemorySize() + CHUNK_CACHE_ENTRY_SIZE, Integer.MAX_VALUE))
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .recordStats()
+                .build(this::loadChunk);
     }
 
     @Override
@@ -186,15 +207,11 @@ public Collection<Vector2i> listRegions() {
     }
 
     @Override
-    public void preloadRegionChunks(int x, int z) {
-        try {
-            getRegion(x, z).iterateAllChunks((cx, cz, chunk) -> {
-                Vector2i chunkPos = VECTOR_2_I_CACHE.get(cx, cz);
-                chunkCache.put(chunkPos, chunk);
-            });
-        } catch (IOException ex) {
-            Logger.global.logDebug("Unexpected exception trying to load preload region (x:" + x + ", z:" + z + "):" + ex);
-        }
+    public void requestHeightRange(int minY, int maxY) {
+        chunkLoader.includeHeightRange(minY, maxY);
+
+        // already loaded chunks might be missing sections of the new range
+        chunkCache.invalidateAll();
     }
 
     @Override
@@ -205,7 +222,7 @@ public void invalidateChunkCache() {
 
     @Override
     public void invalidateChunkCache(int x, int z) {
-        regionCache.invalidate(VECTOR_2_I_CACHE.get(x >> 5, z >> 5));
+        // the region stays cached (and pinned), it re-reads its file on its own if the file changed
         chunkCache.invalidate(VECTOR_2_I_CACHE.get(x, z));
     }
 
@@ -214,6 +231,14 @@ public void cleanUpChunkCache() {
         chunkCache.cleanUp();
     }
 
+    @Override
+    public Map<String, Cache<?, ?>> getCaches() {
+        Map<String, Cache<?, ?>> caches = new LinkedHashMap<>();
+        caches.put("chunks", chunkCache);
+        caches.put("regions", regionCache);
+        return caches;
+    }
+
     private Region loadRegion(Vector2i regionPos) {
         return loadRegion(regionPos.getX(), regionPos.getY());
     }
@@ -233,8 +258,15 @@ private Chunk loadChunk(int x, int z) {
         Exception loadException = null;
         for (int i = 0; i < tries; i++) {
             try {
-                return getRegion(x >> 5, z >> 5)
-                        .loadChunk(x, z);
+                // if the loaded height-range grew while the chunk was loaded, the chunk might be missing sections of
+                // the new range and would be cached after requestHeightRange already invalidated the cache
+                Chunk chunk;
+                Vector2i sectionRange;
+                do {
+                    sectionRange = chunkLoader.getLoadedSectionRange();
+                    chunk = getRegion(x >> 5, z >> 5).loadChunk(x, z);
+                } while (sectionRange != chunkLoader.getLoadedSectionRange());
+                return chunk;
             } catch (IOException | RuntimeException e) {
                 if (loadException != null && loadException != e)
                     e.addSuppressed(loadException);
@@ -257,6 +289,10 @@ private Chunk loadChunk(int x, int z) {
     }
 
     public static MCAWorld load(Path worldFolder, Key dimension) throws IOException, InterruptedException {
+        return load(worldFolder, dimension, DEFAULT_CHUNK_CACHE_MEMORY_LIMIT);
+    }
+
+    public static MCAWorld load(Path worldFolder, Key dimension, long chunkCacheMemoryLimit) throws IOException, InterruptedException {
         // load level.dat
         Path levelFile = worldFolder.resolve("level.dat");
         InputStream levelFileIn = Compression.GZIP.decompress(Files.newInputStream(levelFile));
@@ -279,7 +315,7 @@ public static MCAWorld load(Path worldFolder, Key dimension) throws IOException,
         dataPack.bake();
 
         // create world
-        return new MCAWorld(worldFolder, dimension, levelData, dataPack);
+        return new MCAWorld(worldFolder, dimension, levelData, dataPack, chunkCacheMemoryLimit);
     }
 
     public static String id(Path worldFolder, Key dimension) {
@@ -136,6 +136,13 @@ public int getCapacity() {
         return data.length * elementsPerLong;
     }
 
+    /**
+     * Estimates the heap-memory in bytes that is retained by this instance
+     */
+    public long getMemorySize() {
+        return 48 + MCAUtil.estimateSize(data);
+    }
+
     public boolean isCorrectSize(int expectedSize) {
         int capacity = getCapacity();
         return expectedSize <= capacity && expectedSize + elementsPerLong > capacity;
@@ -24,9 +24,12 @@
  */
 package de.bluecolored.bluemap.core.world.mca.chunk;
 
+import com.flowpowered.math.vector.Vector2i;
+import com.google.gson.reflect.TypeToken;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluenbt.BlueNBT;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.Nullable;
@@ -40,9 +43,69 @@
 public class ChunkLoader {
 
     private final MCAWorld world;
+    private final BlueNBT blueNBT;
+
+    // the (inclusive) range of section-y's that are decoded, or null if all sections are decoded
+    private volatile @Nullable Vector2i loadedSectionRange = null;
+    private boolean heightRangeRequested = false;
 
     public ChunkLoader(MCAWorld world) {
         this.world = world;
+
+        this.blueNBT = MCAUtil.createBlueNBT();
+        this.blueNBT.register(TypeToken.get(Chunk_1_18.SectionData.class), new Chunk_1_18.SectionDataDeserializer(this, blueNBT));
+    }
+
+    /**
+     * Adds the given (inclusive) block-y range to the range of sections that are decoded when a chunk is loaded.<br>
+     * One additional section above and below the range is always included, so neighbor-lookups on the edges of the range
+     * still see the real blocks.<br>
+     * As long as no range has been added, or once the range covers the whole height of the world, all sections are decoded.
+     */
+    public synchronized void includeHeightRange(int minY, int maxY) {
+        Vector2i range = loadedSectionRange;
+
+        // all sections are already decoded
+        if (heightRangeRequested && range == null) return;
+        heightRangeRequested = true;
+
+        int minSectionY = (minY >> 4) - 1;
+        int maxSectionY = (maxY >> 4) + 1;
+
+        if (range != null) {
+            minSectionY = Math.min(minSectionY, range.getX());
+            maxSectionY = Math.max(maxSectionY, range.getY());
+        }
+
+        // the chunks also contain one (light-only) section below and above the world-height
+        int worldMinSectionY = (world.getDimensionType().getMinY() >> 4) - 1;
+        int worldMaxSectionY = ((world.getDimensionType().getMinY() + world.getDimensionType().getHeight() - 1) >> 4) + 1;
+        if (minSectionY <= worldMinSectionY && maxSectionY >= worldMaxSectionY) {
+            loadedSectionRange = null;
+            return;
+        }
+
+        // keep the same instance if nothing changed, so running loads don't need to be repeated
+        if (range != null && range.getX() == minSectionY && range.getY() == maxSectionY) return;
+
+        loadedSectionRange = new Vector2i(minSectionY, maxSectionY);
+    }
+
+    /**
+     * Returns the (inclusive) range of section-y's that are currently decoded when a chunk is loaded, or null if all
+     * sections are decoded.<br>
+     * The range only ever grows, a snapshot of it can be used with {@link #isSectionLoaded(Vector2i, int)} to make
+     * consistent decisions while a chunk is being loaded.
+     */
+    public @Nullable Vector2i getLoadedSectionRange() {
+        return loadedSectionRange;
+    }
+
+    /**
+     * Returns true if the section with the given section-y is part of the given {@link #getLoadedSectionRange() range}
+     */
+    public static boolean isSectionLoaded(@Nullable Vector2i range, int sectionY) {
+        return range == null || (sectionY >= range.getX() && sectionY <= range.getY());
     }
 
     // sorted list of chunk-versions, loaders at the start of the list are preferred over loaders at the end
@@ -56,23 +119,22 @@ public ChunkLoader(MCAWorld world) {
     private ChunkVersionLoader<?> lastUsedLoader = CHUNK_VERSION_LOADERS.get(0);
 
     public MCAChunk load(byte[] data, int offset, int length, Compression compression) throws IOException {
-        InputStream in = new ByteArrayInputStream(data, offset, length);
-        in.mark(-1);
+        // decompress once into the reused buffer of this thread, the nbt is then read straight from that array
+        if (compression != Compression.NONE) {
+            DecompressionContext context = DecompressionContext.get();
+            length = context.decompress(data, offset, length, compression);
+            data = context.getOutput();
+            offset = 0;
+        }
 
         // try last used version
         ChunkVersionLoader<?> usedLoader = lastUsedLoader;
-        MCAChunk chunk;
-        try (InputStream decompressedIn = compression.decompress(in)) {
-            chunk = usedLoader.load(world, decompressedIn);
-        }
+        MCAChunk chunk = usedLoader.load(world, blueNBT, new ByteArrayInputStream(data, offset, length));
 
         // check version and reload chunk if the wrong loader has been used and a better one has been found
         ChunkVersionLoader<?> actualLoader = findBestLoaderForVersion(chunk.getDataVersion());
         if (actualLoader != null && usedLoader != actualLoader) {
-            in.reset(); // reset read position
-            try (InputStream decompressedIn = compression.decompress(in)) {
-                chunk = actualLoader.load(world, decompressedIn);
-            }
+            chunk = actualLoader.load(world, blueNBT, new ByteArrayInputStream(data, offset, length));
             lastUsedLoader = actualLoader;
         }
 
@@ -94,8 +156,8 @@ public MCAChunk load(byte[] data, int offset, int length, Compression compressio
         private final BiFunction<MCAWorld, D, MCAChunk> constructor;
         private final int dataVersion;
 
-        public MCAChunk load(MCAWorld world, InputStream in) throws IOException {
-            D data = MCAUtil.BLUENBT.read(in, dataType);
+        public MCAChunk load(MCAWorld world, BlueNBT blueNBT, InputStream in) throws IOException {
+            D data = blueNBT.read(in, dataType);
             return mightSupport(data.getDataVersion()) ? constructor.apply(world, data) : new MCAChunk(world, data) {};
         }
 
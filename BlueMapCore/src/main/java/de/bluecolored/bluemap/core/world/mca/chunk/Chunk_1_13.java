@@ -33,14 +33,11 @@
 import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.data.LazyBlockEntities;
 import de.bluecolored.bluenbt.NBTName;
 import lombok.Getter;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
 public class Chunk_1_13 extends MCAChunk {
 
     private static final Key STATUS_EMPTY = new Key("minecraft", "empty");
@@ -63,7 +60,9 @@ public class Chunk_1_13 extends MCAChunk {
     private final int sectionMin, sectionMax;
 
     final int[] biomes;
-    private final Map<Long, BlockEntity> blockEntities;
+    private final LazyBlockEntities blockEntities;
+
+    private final long memorySize;
 
     public Chunk_1_13(MCAWorld world, Data data) {
         super(world, data);
@@ -120,9 +119,18 @@ public Chunk_1_13(MCAWorld world, Data data) {
             this.sectionMax = 0;
         }
 
-        this.blockEntities = level.blockEntities.stream().collect(Collectors.toMap(
-                it -> (long) it.getY() << 8 | (it.getX() & 0xF) << 4 | it.getZ() & 0xF, it -> it
-        ));
+        this.blockEntities = level.blockEntities;
+
+        long memorySize = CHUNK_BASE_SIZE +
+                MCAUtil.estimateSize(worldSurfaceHeights) +
+                MCAUtil.estimateSize(oceanFloorHeights) +
+                MCAUtil.estimateSize(biomes) +
+                MCAUtil.estimateSize(sections) +
+                blockEntities.getMemorySize();
+        for (Section section : sections) {
+            if (section != null) memorySize += section.getMemorySize();
+        }
+        this.memorySize = memorySize;
     }
 
     @Override
@@ -149,11 +157,24 @@ public BlockState getBlockState(int x, int y, int z) {
     }
 
     @Override
-    public String getBiome(int x, int y, int z) {
-        if (this.biomes.length < 256) return Biome.DEFAULT.getFormatted();
+    public @Nullable BlockState getUniformSectionBlockState(int sectionY) {
+        Section section = getSection(sectionY);
+        if (section == null) return BlockState.AIR;
+
+        return section.getUniformBlockState();
+    }
+
+    @Override
+    public int getBiomeId(int x, int y, int z) {
+        if (this.biomes.length < 256) return Biome.DEFAULT.getId();
 
         int biomeIntIndex = (z & 0xF) << 4 | x & 0xF;
-        return LegacyBiomes.idFor(biomes[biomeIntIndex]);
+        return LegacyBiomes.globalIdFor(biomes[biomeIntIndex]);
+    }
+
+    @Override
+    public long getMemorySize() {
+        return memorySize;
     }
 
     @Override
@@ -207,7 +228,7 @@ public int getOceanFloorY(int x, int z) {
 
     @Override
     public @Nullable BlockEntity getBlockEntity(int x, int y, int z) {
-        return blockEntities.get((long) y << 8 | (x & 0xF) << 4 | z & 0xF);
+        return blockEntities.get(x, y, z);
     }
 
     private @Nullable Section getSection(int y) {
@@ -232,12 +253,18 @@ public Section(SectionData sectionData) {
             this.blockPalette = sectionData.palette;
             this.blocks = sectionData.blockStates;
 
-            this.blockLight = sectionData.getBlockLight();
-            this.skyLight = sectionData.getSkyLight();
+            this.blockLight = shareUniformLight(sectionData.getBlockLight());
+            this.skyLight = shareUniformLight(sectionData.getSkyLight());
 
             this.bitsPerBlock = this.blocks.length >> 6; // available longs * 64 (bits per long) / 4096 (blocks per section) (floored result)
         }
 
+        public @Nullable BlockState getUniformBlockState() {
+            if (blockPalette.length == 1) return blockPalette[0];
+            if (blockPalette.length == 0) return BlockState.AIR;
+            return null;
+        }
+
         public BlockState getBlockState(int x, int y, int z) {
             if (blockPalette.length == 1) return blockPalette[0];
             if (blockPalette.length == 0) return BlockState.AIR;
@@ -255,6 +282,14 @@ public BlockState getBlockState(int x, int y, int z) {
             return blockPalette[id];
         }
 
+        public long getMemorySize() {
+            return SECTION_BASE_SIZE +
+                    MCAUtil.estimateSize(blockPalette) +
+                    MCAUtil.estimateSize(blocks) +
+                    estimateLightSize(blockLight) +
+                    estimateLightSize(skyLight);
+        }
+
         public LightData getLightData(int x, int y, int z, LightData target) {
             if (blockLight.length == 0 && skyLight.length == 0) return target.set(0, 0);
 
@@ -288,7 +323,7 @@ public static class Level {
         private HeightmapsData heightmaps = new HeightmapsData();
         private SectionData @Nullable [] sections = null;
         private int[] biomes = EMPTY_INT_ARRAY;
-        @NBTName("TileEntities") private List<BlockEntity> blockEntities = List.of();
+        @NBTName("TileEntities") private LazyBlockEntities blockEntities = LazyBlockEntities.EMPTY;
     }
 
     @Getter
@@ -34,8 +34,8 @@ public Chunk_1_15(MCAWorld world, Data data) {
     }
 
     @Override
-    public String getBiome(int x, int y, int z) {
-        if (this.biomes.length < 16) return Biome.DEFAULT.getFormatted();
+    public int getBiomeId(int x, int y, int z) {
+        if (this.biomes.length < 16) return Biome.DEFAULT.getId();
 
         int biomeIntIndex = (y & 0b1100) << 2 | z & 0b1100 | (x & 0b1100) >> 2;
 
@@ -43,7 +43,7 @@ public String getBiome(int x, int y, int z) {
         if (biomeIntIndex >= biomes.length) biomeIntIndex -= (((biomeIntIndex - biomes.length) >> 4) + 1) * 16;
         if (biomeIntIndex < 0) biomeIntIndex -= (biomeIntIndex >> 4) * 16;
 
-        return LegacyBiomes.idFor(biomes[biomeIntIndex]);
+        return LegacyBiomes.globalIdFor(biomes[biomeIntIndex]);
     }
 
 }
@@ -34,14 +34,11 @@
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import de.bluecolored.bluemap.core.world.mca.PackedIntArrayAccess;
+import de.bluecolored.bluemap.core.world.mca.data.LazyBlockEntities;
 import de.bluecolored.bluenbt.NBTName;
 import lombok.Getter;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
 public class Chunk_1_16 extends MCAChunk {
 
     private static final Key STATUS_EMPTY = new Key("minecraft", "empty");
@@ -62,7 +59,9 @@ public class Chunk_1_16 extends MCAChunk {
     private final int sectionMin, sectionMax;
 
     private final int[] biomes;
-    private final Map<Long, BlockEntity> blockEntities;
+    private final LazyBlockEntities blockEntities;
+
+    private final long memorySize;
 
     public Chunk_1_16(MCAWorld world, Data data) {
         super(world, data);
@@ -119,9 +118,18 @@ public Chunk_1_16(MCAWorld world, Data data) {
             this.sectionMax = 0;
         }
 
-        this.blockEntities = level.blockEntities.stream().collect(Collectors.toMap(
-                it -> (long) it.getY() << 8 | (it.getX() & 0xF) << 4 | it.getZ() & 0xF, it -> it
-        ));
+        this.blockEntities = level.blockEntities;
+
+        long memorySize = CHUNK_BASE_SIZE +
+                worldSurfaceHeights.getMemorySize() +
+                oceanFloorHeights.getMemorySize() +
+                MCAUtil.estimateSize(biomes) +
+                MCAUtil.estimateSize(sections) +
+                blockEntities.getMemorySize();
+        for (Section section : sections) {
+            if (section != null) memorySize += section.getMemorySize();
+        }
+        this.memorySize = memorySize;
     }
 
     @Override
@@ -148,8 +156,16 @@ public BlockState getBlockState(int x, int y, int z) {
     }
 
     @Override
-    public String getBiome(int x, int y, int z) {
-        if (this.biomes.length < 16) return Biome.DEFAULT.getFormatted();
+    public @Nullable BlockState getUniformSectionBlockState(int sectionY) {
+        Section section = getSection(sectionY);
+        if (section == null) return BlockState.AIR;
+
+        return section.getUniformBlockState();
+    }
+
+    @Override
+    public int getBiomeId(int x, int y, int z) {
+        if (this.biomes.length < 16) return Biome.DEFAULT.getId();
 
         int biomeIntIndex = (y & 0b1100) << 2 | z & 0b1100 | (x & 0b1100) >> 2;
 
@@ -157,7 +173,12 @@ public String getBiome(int x, int y, int z) {
         if (biomeIntIndex >= biomes.length) biomeIntIndex -= (((biomeIntIndex - biomes.length) >> 4) + 1) * 16;
         if (biomeIntIndex < 0) biomeIntIndex -= (biomeIntIndex >> 4) * 16;
 
-        return LegacyBiomes.idFor(biomes[biomeIntIndex]);
+        return LegacyBiomes.globalIdFor(biomes[biomeIntIndex]);
+    }
+
+    @Override
+    public long getMemorySize() {
+        return memorySize;
     }
 
     @Override
@@ -203,7 +224,7 @@ public int getOceanFloorY(int x, int z) {
 
     @Override
     public @Nullable BlockEntity getBlockEntity(int x, int y, int z) {
-        return blockEntities.get((long) y << 8 | (x & 0xF) << 4 | z & 0xF);
+        return blockEntities.get(x, y, z);
     }
 
     private @Nullable Section getSection(int y) {
@@ -226,8 +247,14 @@ public Section(SectionData sectionData) {
             this.blockPalette = sectionData.palette;
             this.blocks = new PackedIntArrayAccess(sectionData.blockStates, BLOCKS_PER_SECTION);
 
-            this.blockLight = sectionData.getBlockLight();
-            this.skyLight = sectionData.getSkyLight();
+            this.blockLight = shareUniformLight(sectionData.getBlockLight());
+            this.skyLight = shareUniformLight(sectionData.getSkyLight());
+        }
+
+        public @Nullable BlockState getUniformBlockState() {
+            if (blockPalette.length == 1) return blockPalette[0];
+            if (blockPalette.length == 0) return BlockState.AIR;
+            return null;
         }
 
         public BlockState getBlockState(int x, int y, int z) {
@@ -243,6 +270,14 @@ public BlockState getBlockState(int x, int y, int z) {
             return blockPalette[id];
         }
 
+        public long getMemorySize() {
+            return SECTION_BASE_SIZE +
+                    MCAUtil.estimateSize(blockPalette) +
+                    blocks.getMemorySize() +
+                    estimateLightSize(blockLight) +
+                    estimateLightSize(skyLight);
+        }
+
         public LightData getLightData(int x, int y, int z, LightData target) {
             if (blockLight.length == 0 && skyLight.length == 0) return target.set(0, 0);
 
@@ -276,7 +311,7 @@ public static class Level {
         private HeightmapsData heightmaps = new HeightmapsData();
         private SectionData @Nullable [] sections = null;
         private int[] biomes = EMPTY_INT_ARRAY;
-        @NBTName("TileEntities") private List<BlockEntity> blockEntities = List.of();
+        @NBTName("TileEntities") private LazyBlockEntities blockEntities = LazyBlockEntities.EMPTY;
     }
 
     @Getter
@@ -24,6 +24,7 @@
  */
 package de.bluecolored.bluemap.core.world.mca.chunk;
 
+import com.flowpowered.math.vector.Vector2i;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.Biome;
@@ -34,13 +35,16 @@
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import de.bluecolored.bluemap.core.world.mca.PackedIntArrayAccess;
+import de.bluecolored.bluemap.core.world.mca.data.LazyBlockEntities;
+import de.bluecolored.bluenbt.BlueNBT;
 import de.bluecolored.bluenbt.NBTName;
+import de.bluecolored.bluenbt.NBTReader;
+import de.bluecolored.bluenbt.TagType;
+import de.bluecolored.bluenbt.TypeDeserializer;
 import lombok.Getter;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.io.IOException;
 
 public class Chunk_1_18 extends MCAChunk {
 
@@ -62,7 +66,9 @@ public class Chunk_1_18 extends MCAChunk {
     private final Section[] sections;
     private final int sectionMin, sectionMax;
 
-    private final Map<Long, BlockEntity> blockEntities;
+    private final LazyBlockEntities blockEntities;
+
+    private final long memorySize;
 
     public Chunk_1_18(MCAWorld world, Data data) {
         super(world, data);
@@ -99,6 +105,8 @@ public Chunk_1_18(MCAWorld world, Data data) {
             // load sections into ordered array
             this.sections = new Section[1 + max - min];
             for (SectionData sectionData : sectionsData) {
+                if (sectionData.skipped) continue;
+
                 Section section = new Section(sectionData);
                 int y = section.getSectionY();
 
@@ -116,9 +124,17 @@ public Chunk_1_18(MCAWorld world, Data data) {
             this.sectionMax = 0;
         }
 
-        this.blockEntities = data.blockEntities.stream().collect(Collectors.toMap(
-            it -> (long) it.getY() << 8 | (it.getX() & 0xF) << 4 | it.getZ() & 0xF, it -> it
-        ));
+        this.blockEntities = data.blockEntities;
+
+        long memorySize = CHUNK_BASE_SIZE +
+                worldSurfaceHeights.getMemorySize() +
+                oceanFloorHeights.getMemorySize() +
+                MCAUtil.estimateSize(sections) +
+                blockEntities.getMemorySize();
+        for (Section section : sections) {
+            if (section != null) memorySize += section.getMemorySize();
+        }
+        this.memorySize = memorySize;
     }
 
     @Override
@@ -145,11 +161,24 @@ public BlockState getBlockState(int x, int y, int z) {
     }
 
     @Override
-    public String getBiome(int x, int y, int z) {
+    public @Nullable BlockState getUniformSectionBlockState(int sectionY) {
+        Section section = getSection(sectionY);
+        if (section == null) return BlockState.AIR;
+
+        return section.getUniformBlockState();
+    }
+
+    @Override
+    public int getBiomeId(int x, int y, int z) {
         Section section = getSection(y >> 4);
-        if (section == null) return Biome.DEFAULT.getFormatted();
+        if (section == null) return Biome.DEFAULT.getId();
 
-        return section.getBiome(x, y, z);
+        return section.getBiomeId(x, y, z);
+    }
+
+    @Override
+    public long getMemorySize() {
+        return memorySize;
     }
 
     @Override
@@ -195,7 +224,7 @@ public int getOceanFloorY(int x, int z) {
 
     @Override
     public @Nullable BlockEntity getBlockEntity(int x, int y, int z) {
-        return blockEntities.get((long) y << 8 | (x & 0xF) << 4 | z & 0xF);
+        return blockEntities.get(x, y, z);
     }
 
     private @Nullable Section getSection(int y) {
@@ -208,7 +237,7 @@ protected static class Section {
 
         private final int sectionY;
         private final BlockState[] blockPalette;
-        private final String[] biomePalette;
+        private final int[] biomePalette;
         private final PackedIntArrayAccess blocks;
         private final PackedIntArrayAccess biomes;
         private final byte[] blockLight;
@@ -218,13 +247,22 @@ public Section(SectionData sectionData) {
             this.sectionY = sectionData.y;
 
             this.blockPalette = sectionData.blockStates.palette;
-            this.biomePalette = sectionData.biomes.palette;
+            String[] biomePalette = sectionData.biomes.palette;
+            this.biomePalette = new int[biomePalette.length];
+            for (int i = 0; i < biomePalette.length; i++)
+                this.biomePalette[i] = Biome.idOf(biomePalette[i]);
 
             this.blocks = new PackedIntArrayAccess(sectionData.blockStates.data, BLOCKS_PER_SECTION);
             this.biomes = new PackedIntArrayAccess(Math.max(MCAUtil.ceilLog2(this.biomePalette.length), 1), sectionData.biomes.data);
 
-            this.blockLight = sectionData.blockLight;
-            this.skyLight = sectionData.skyLight;
+            this.blockLight = shareUniformLight(sectionData.blockLight);
+            this.skyLight = shareUniformLight(sectionData.skyLight);
+        }
+
+        public @Nullable BlockState getUniformBlockState() {
+            if (blockPalette.length == 1) return blockPalette[0];
+            if (blockPalette.length == 0) return BlockState.AIR;
+            return null;
         }
 
         public BlockState getBlockState(int x, int y, int z) {
@@ -240,14 +278,24 @@ public BlockState getBlockState(int x, int y, int z) {
             return blockPalette[id];
         }
 
-        public String getBiome(int x, int y, int z) {
+        public long getMemorySize() {
+            return SECTION_BASE_SIZE +
+                    MCAUtil.estimateSize(blockPalette) +
+                    MCAUtil.estimateSize(biomePalette) +
+                    blocks.getMemorySize() +
+                    biomes.getMemorySize() +
+                    estimateLightSize(blockLight) +
+                    estimateLightSize(skyLight);
+        }
+
+        public int getBiomeId(int x, int y, int z) {
             if (biomePalette.length == 1) return biomePalette[0];
-            if (biomePalette.length == 0) return Biome.DEFAULT.getValue();
+            if (biomePalette.length == 0) return Biome.DEFAULT.getId();
 
             int id = biomes.get((y & 0b1100) << 2 | z & 0b1100 | (x & 0b1100) >> 2);
             if (id >= biomePalette.length) {
                 Logger.global.noFloodWarning("biome-palette-warning", "Got biome-palette id " + id + " but palette has size of " + biomePalette.length + ".");
-                return Biome.DEFAULT.getValue();
+                return Biome.DEFAULT.getId();
             }
 
             return biomePalette[id];
@@ -279,7 +327,7 @@ public static class Data extends MCAChunk.Data {
         private long inhabitedTime = 0;
         private HeightmapsData heightmaps = new HeightmapsData();
         private SectionData @Nullable [] sections = null;
-        @NBTName("block_entities") private List<BlockEntity> blockEntities = List.of();
+        @NBTName("block_entities") private LazyBlockEntities blockEntities = LazyBlockEntities.EMPTY;
     }
 
     @Getter
@@ -297,6 +345,81 @@ public static class SectionData {
         private byte[] skyLight = EMPTY_BYTE_ARRAY;
         @NBTName("block_states") private BlockStatesData blockStates = new BlockStatesData();
         private BiomesData biomes = new BiomesData();
+        private transient boolean skipped = false;
+    }
+
+    /**
+     * Reads {@link SectionData}, but only decodes the block-states, biomes and light of sections that the
+     * {@link ChunkLoader} wants to have loaded. All other sections are skipped on the nbt-reader and only their y is kept.<br>
+     * Minecraft does not write the Y-tag of a section first, so while only a part of the sections is loaded, the
+     * block-states and biomes that come before it are only copied as raw nbt and decoded once the y of the section is known.
+     * If all sections are loaded they are always decoded directly.
+     */
+    static class SectionDataDeserializer implements TypeDeserializer<SectionData> {
+
+        private final ChunkLoader chunkLoader;
+        private final BlueNBT blueNBT;
+
+        SectionDataDeserializer(ChunkLoader chunkLoader, BlueNBT blueNBT) {
+            this.chunkLoader = chunkLoader;
+            this.blueNBT = blueNBT;
+        }
+
+        @Override
+        public SectionData read(NBTReader reader) throws IOException {
+            SectionData section = new SectionData();
+            // use the same range for all decisions, even if it grows while the section is read
+            Vector2i range = chunkLoader.getLoadedSectionRange();
+            boolean yKnown = false, decode = range == null;
+            byte[] rawBlockStates = null, rawBiomes = null;
+
+            reader.beginCompound();
+            while (reader.hasNext()) {
+                String name = reader.name();
+
+                if (name.equals("Y")) {
+                    section.y = reader.peek() == TagType.BYTE ? reader.nextByte() : reader.nextInt();
+                    yKnown = true;
+                    decode = ChunkLoader.isSectionLoaded(range, section.y);
+                    continue;
+                }
+
+                if (yKnown && !decode) {
+                    reader.skip();
+                    continue;
+                }
+
+                switch (name) {
+                    case "block_states":
+                        if (decode) section.blockStates = blueNBT.read(reader, BlockStatesData.class);
+                        else rawBlockStates = reader.raw();
+                        break;
+                    case "biomes":
+                        if (decode) section.biomes = blueNBT.read(reader, BiomesData.class);
+                        else rawBiomes = reader.raw();
+                        break;
+                    case "BlockLight": section.blockLight = reader.nextByteArray(); break;
+                    case "SkyLight": section.skyLight = reader.nextByteArray(); break;
+                    default: reader.skip();
+                }
+            }
+            reader.endCompound();
+
+            if (!ChunkLoader.isSectionLoaded(range, section.y)) {
+                section.blockLight = EMPTY_BYTE_ARRAY;
+                section.skyLight = EMPTY_BYTE_ARRAY;
+                section.skipped = true;
+                return section;
+            }
+
+            if (rawBlockStates != null)
+                section.blockStates = blueNBT.read(new NBTReader(rawBlockStates), BlockStatesData.class);
+            if (rawBiomes != null)
+                section.biomes = blueNBT.read(new NBTReader(rawBiomes), BiomesData.class);
+
+            return section;
+        }
+
     }
 
     @Getter
@@ -0,0 +1,142 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reusable buffers and decoders to read and decompress chunk-data, one instance per thread.<br>
+ * The compressed data of a chunk is read into the {@link #getInput(int) input-buffer} and decompressed into the
+ * {@link #getOutput() output-buffer}, so loading a chunk does not need to allocate new arrays or a new {@link Inflater}
+ * (with its native zlib-state) each time.<br>
+ * <br>
+ * <i>The content of both buffers is only valid until the next chunk is loaded on the same thread,
+ * so nothing may keep a reference to them.</i>
+ */
+public class DecompressionContext {
+
+    private static final ThreadLocal<DecompressionContext> INSTANCE = ThreadLocal.withInitial(DecompressionContext::new);
+
+    private static final int INITIAL_INPUT_SIZE = 16 * 1024;
+    private static final int INITIAL_OUTPUT_SIZE = 128 * 1024;
+
+    // buffers that grew larger than this for some huge chunk are not kept after they are needed again
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final Inflater inflater = new Inflater();
+    private byte[] input = new byte[INITIAL_INPUT_SIZE];
+    private byte[] output = new byte[INITIAL_OUTPUT_SIZE];
+
+    private DecompressionContext() {}
+
+    /**
+     * Returns the input-buffer, making sure it has space for at least the given number of bytes.<br>
+     * The content of the buffer is only kept if it does not need to be resized.
+     */
+    public byte[] getInput(int length) {
+        if (input.length < length || (input.length > MAX_RETAINED_BUFFER_SIZE && length <= MAX_RETAINED_BUFFER_SIZE))
+            input = new byte[Math.max(length, INITIAL_INPUT_SIZE)];
+        return input;
+    }
+
+    /**
+     * Returns the current input-buffer
+     */
+    public byte[] getInput() {
+        return input;
+    }
+
+    /**
+     * Returns the output-buffer containing the data of the last {@link #decompress} call
+     */
+    public byte[] getOutput() {
+        return output;
+    }
+
+    /**
+     * Decompresses the given data into the {@link #getOutput() output-buffer} and returns the decompressed length.<br>
+     * Deflate (zlib) is decompressed with the reusable {@link Inflater} of this context, all other compressions
+     * are read from their decompressing stream.
+     */
+    public int decompress(byte[] data, int offset, int length, Compression compression) throws IOException {
+        if (output.length > MAX_RETAINED_BUFFER_SIZE) output = new byte[INITIAL_OUTPUT_SIZE];
+
+        if (compression == Compression.DEFLATE) return inflate(data, offset, length);
+
+        try (InputStream in = compression.decompress(new ByteArrayInputStream(data, offset, length))) {
+            int size = 0, read;
+            while (true) {
+                if (size == output.length) grow();
+                read = in.read(output, size, output.length - size);
+                if (read < 0) return size;
+                size += read;
+            }
+        }
+    }
+
+    private int inflate(byte[] data, int offset, int length) throws IOException {
+        inflater.reset();
+        inflater.setInput(data, offset, length);
+
+        try {
+            int size = 0;
+            while (!inflater.finished()) {
+                if (size == output.length) grow();
+
+                int inflated = inflater.inflate(output, size, output.length - size);
+                if (inflated == 0 && !inflater.finished()) {
+                    if (inflater.needsDictionary()) throw new IOException("Deflate-data needs a preset dictionary");
+                    if (inflater.needsInput()) throw new EOFException("Unexpected end of deflate-data");
+                }
+
+                size += inflated;
+            }
+            return size;
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid deflate-data", ex);
+        }
+    }
+
+    private void grow() {
+        byte[] grown = new byte[output.length * 2];
+        System.arraycopy(output, 0, grown, 0, output.length);
+        output = grown;
+    }
+
+    /**
+     * Returns the context of the current thread
+     */
+    public static DecompressionContext get() {
+        return INSTANCE.get();
+    }
+
+}
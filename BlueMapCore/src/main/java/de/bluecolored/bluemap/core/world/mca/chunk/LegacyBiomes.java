@@ -24,6 +24,8 @@
  */
 package de.bluecolored.bluemap.core.world.mca.chunk;
 
+import de.bluecolored.bluemap.core.world.Biome;
+
 import java.util.Arrays;
 
 public class LegacyBiomes {
@@ -108,9 +110,21 @@ public class LegacyBiomes {
         BIOME_IDS[169] = "minecraft:bamboo_jungle_hills";
     }
 
+    private static final int[] BIOME_GLOBAL_IDS = Arrays.stream(BIOME_IDS)
+            .mapToInt(Biome::idOf)
+            .toArray();
+
     public static String idFor(int legacyId) {
         if (legacyId < 0 || legacyId >= BIOME_IDS.length) legacyId = 0;
         return BIOME_IDS[legacyId];
     }
 
+    /**
+     * Returns the global {@link Biome#getId() biome-id} for the given legacy (numeric) biome-id
+     */
+    public static int globalIdFor(int legacyId) {
+        if (legacyId < 0 || legacyId >= BIOME_GLOBAL_IDS.length) legacyId = 0;
+        return BIOME_GLOBAL_IDS[legacyId];
+    }
+
 }
@@ -26,10 +26,13 @@
 
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import lombok.Getter;
 import lombok.ToString;
 
+import java.util.Arrays;
+
 @Getter
 @ToString
 public abstract class MCAChunk implements Chunk {
@@ -44,6 +47,17 @@ public abstract class MCAChunk implements Chunk {
     protected static final String[] EMPTY_STRING_ARRAY = new String[0];
     protected static final BlockState[] EMPTY_BLOCKSTATE_ARRAY = new BlockState[0];
 
+    private static final int LIGHT_ARRAY_LENGTH = BLOCKS_PER_SECTION / 2;
+    private static final byte[] NO_LIGHT_ARRAY = new byte[LIGHT_ARRAY_LENGTH];
+    private static final byte[] FULL_LIGHT_ARRAY = new byte[LIGHT_ARRAY_LENGTH];
+    static {
+        Arrays.fill(FULL_LIGHT_ARRAY, (byte) 0xFF);
+    }
+
+    // rough heap-size estimations used for getMemorySize()
+    protected static final int CHUNK_BASE_SIZE = 128;
+    protected static final int SECTION_BASE_SIZE = 48;
+
     private final MCAWorld world;
     private final int dataVersion;
 
@@ -52,6 +66,31 @@ public MCAChunk(MCAWorld world, Data chunkData) {
         this.dataVersion = chunkData.getDataVersion();
     }
 
+    /**
+     * Returns a shared array instead of the given light-array if all of its values are 0 or all of them are 15.<br>
+     * Those are very common (e.g. the block-light of most sections or the sky-light above the surface),
+     * and sharing them saves 2KiB for each of them.
+     */
+    protected static byte[] shareUniformLight(byte[] light) {
+        if (light.length != LIGHT_ARRAY_LENGTH) return light;
+
+        byte first = light[0];
+        if (first != 0 && first != (byte) 0xFF) return light;
+        for (int i = 1; i < LIGHT_ARRAY_LENGTH; i++) {
+            if (light[i] != first) return light;
+        }
+
+        return first == 0 ? NO_LIGHT_ARRAY : FULL_LIGHT_ARRAY;
+    }
+
+    /**
+     * Estimates the heap-memory in bytes that is retained by the given light-array, shared arrays are not counted
+     */
+    protected static long estimateLightSize(byte[] light) {
+        if (light == NO_LIGHT_ARRAY || light == FULL_LIGHT_ARRAY) return 0;
+        return MCAUtil.estimateSize(light);
+    }
+
     @SuppressWarnings("FieldMayBeFinal")
     @Getter
     public static class Data {
@@ -58,7 +58,8 @@ public BlockState read(NBTReader reader) throws IOException {
         reader.endCompound();
 
         if (id == null) throw new IOException("Invalid BlockState, Name is missing!");
-        return properties == null ? new BlockState(id) : new BlockState(id, properties);
+        BlockState blockState = properties == null ? new BlockState(id) : new BlockState(id, properties);
+        return blockState.intern();
     }
 
 }
\ No newline at end of file
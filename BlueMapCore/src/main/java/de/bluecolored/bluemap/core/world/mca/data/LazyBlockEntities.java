@@ -0,0 +1,106 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.data;
+
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
+import de.bluecolored.bluemap.core.world.mca.MCAUtil;
+import de.bluecolored.bluenbt.NBTDeserializer;
+import de.bluecolored.bluenbt.NBTReader;
+import de.bluecolored.bluenbt.TypeDeserializer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The block-entities of a chunk.<br>
+ * They are kept as raw nbt when the chunk is loaded and only decoded the first time one of them is requested,
+ * since most chunks are rendered without ever looking at their block-entities.
+ */
+@NBTDeserializer(LazyBlockEntities.Deserializer.class)
+public class LazyBlockEntities {
+
+    public static final LazyBlockEntities EMPTY = new LazyBlockEntities(null);
+
+    private final byte @Nullable [] raw;
+    private volatile @Nullable Map<Long, BlockEntity> blockEntities;
+
+    private LazyBlockEntities(byte @Nullable [] raw) {
+        this.raw = raw;
+        this.blockEntities = raw == null ? Map.of() : null;
+    }
+
+    public @Nullable BlockEntity get(int x, int y, int z) {
+        Map<Long, BlockEntity> blockEntities = this.blockEntities;
+        if (blockEntities == null) blockEntities = decode();
+        return blockEntities.get((long) y << 8 | (x & 0xF) << 4 | z & 0xF);
+    }
+
+    /**
+     * Returns an estimation of the heap-memory in bytes that is retained by the raw (not yet decoded) block-entities
+     */
+    public long getMemorySize() {
+        return raw == null ? 0 : MCAUtil.estimateSize(raw);
+    }
+
+    private synchronized Map<Long, BlockEntity> decode() {
+        Map<Long, BlockEntity> blockEntities = this.blockEntities;
+        if (blockEntities != null) return blockEntities;
+
+        // decode the entries one by one, so a broken block-entity only loses itself and the ones after it.
+        // the (partial) result is stored in any case, so a broken chunk is not decoded again on every request.
+        blockEntities = new HashMap<>();
+        try {
+            NBTReader reader = new NBTReader(raw);
+            reader.beginList();
+            while (reader.hasNext()) {
+                BlockEntity blockEntity = MCAUtil.BLUENBT.read(reader, BlockEntity.class);
+                if (blockEntity == null) continue;
+                blockEntities.put(
+                        (long) blockEntity.getY() << 8 | (blockEntity.getX() & 0xF) << 4 | blockEntity.getZ() & 0xF,
+                        blockEntity
+                );
+            }
+            reader.endList();
+        } catch (IOException | RuntimeException ex) {
+            Logger.global.noFloodWarning("block-entity-decode", "Failed to decode block-entities of a chunk: " + ex);
+        }
+
+        this.blockEntities = blockEntities;
+        return blockEntities;
+    }
+
+    public static class Deserializer implements TypeDeserializer<LazyBlockEntities> {
+
+        @Override
+        public LazyBlockEntities read(NBTReader reader) throws IOException {
+            return new LazyBlockEntities(reader.raw());
+        }
+
+    }
+
+}
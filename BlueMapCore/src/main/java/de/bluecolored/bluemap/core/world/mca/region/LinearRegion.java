@@ -25,16 +25,30 @@
 package de.bluecolored.bluemap.core.world.mca.region;
 
 import com.flowpowered.math.vector.Vector2i;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.ChunkConsumer;
 import de.bluecolored.bluemap.core.world.Region;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.chunk.DecompressionContext;
 import de.bluecolored.bluemap.core.world.mca.chunk.MCAChunk;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  * LinearFormat:
@@ -62,21 +76,38 @@ public class LinearRegion implements Region {
 
     public static final String FILE_SUFFIX = ".linear";
 
+    public static final long DEFAULT_DATA_CACHE_MEMORY_LIMIT = 128 * 1024 * 1024;
+
     private static final long MAGIC = 0xc3ff13183cca9d9aL;
 
+    private static volatile long dataCacheMemoryLimit = DEFAULT_DATA_CACHE_MEMORY_LIMIT;
+
+    /**
+     * The decompressed data of recently used linear regions, shared by all worlds and limited by its size in bytes.<br>
+     * A single region is never weighed more than the whole limit, so a region that is bigger than the limit is still
+     * kept (alone) instead of being evicted right after it has been loaded.
+     */
+    private static final Cache<LinearRegion, RegionData> REGION_DATA_CACHE = Caffeine.newBuilder()
+            .executor(BlueMap.THREAD_POOL)
+            .weakKeys()
+            .maximumWeight(DEFAULT_DATA_CACHE_MEMORY_LIMIT)
+            .weigher((LinearRegion region, RegionData data) -> (int) Math.min(data.data.length, Math.min(dataCacheMemoryLimit, Integer.MAX_VALUE)))
+            .removalListener((LinearRegion region, RegionData data, RemovalCause cause) -> {
+                if (data != null) data.release();
+            })
+            .build();
+
+    /**
+     * Data-arrays of regions that are no longer used, they are reused for the next regions that are loaded
+     */
+    private static final BlockingQueue<byte[]> DATA_BUFFER_POOL = new ArrayBlockingQueue<>(2);
+
     private final MCAWorld world;
     private final Path regionFile;
     private final Vector2i regionPos;
 
-    private boolean initialized = false;
-
-    private byte version;
-    private long newestTimestamp;
-    private byte compressionLevel;
-    private short chunkCount;
-    private int dataLength;
-    private long dataHash;
-    private byte[] compressedData;
+    private int pinCount = 0;
+    private volatile @Nullable RegionData pinnedData = null;
 
     public LinearRegion(MCAWorld world, Path regionFile) throws IllegalArgumentException {
         this.world = world;
@@ -95,98 +126,147 @@ public LinearRegion(MCAWorld world, Vector2i regionPos) throws IllegalArgumentEx
         this.regionFile = world.getRegionFolder().resolve(getRegionFileName(regionPos.getX(), regionPos.getY()));
     }
 
-    private synchronized void init() throws IOException {
-        if (initialized) return;
-
-        if (Files.notExists(regionFile)) return;
+    @Override
+    public Chunk loadChunk(int chunkX, int chunkZ) throws IOException {
+        RegionData data = retainRegionData();
+        if (data == null) return Chunk.EMPTY_CHUNK;
+
+        try {
+            int i = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
+            int length = data.lengths[i];
+            if (length <= 0) return Chunk.EMPTY_CHUNK;
+
+            return world.getChunkLoader().load(data.data, data.offsets[i], length, Compression.NONE);
+        } finally {
+            data.release();
+        }
+    }
 
-        long fileLength = Files.size(regionFile);
-        if (fileLength == 0) return;
+    @Override
+    public void iterateAllChunks(ChunkConsumer consumer) throws IOException {
+        RegionData data = retainRegionData();
+        if (data == null) return;
 
-        try (
-                InputStream in = Files.newInputStream(regionFile, StandardOpenOption.READ);
-                BufferedInputStream bIn = new BufferedInputStream(in);
-                DataInputStream dIn = new DataInputStream(bIn)
-        ) {
-            if (dIn.readLong() != MAGIC)
-                throw new IOException("Linear region-file format: invalid header magic");
+        try {
+            int chunkStartX = regionPos.getX() * 32;
+            int chunkStartZ = regionPos.getY() * 32;
 
-            // read the header
-            version = dIn.readByte();
-            newestTimestamp = dIn.readLong();
-            compressionLevel = dIn.readByte();
-            chunkCount = dIn.readShort();
-            dataLength = dIn.readInt();
-            dataHash = dIn.readLong();
+            int i = 0;
+            for (int z = 0; z < 32; z++) {
+                for (int x = 0; x < 32; x++, i++) {
+                    int length = data.lengths[i];
+                    if (length <= 0) continue;
+
+                    int chunkX = chunkStartX + x;
+                    int chunkZ = chunkStartZ + z;
+                    long timestamp = data.version == 2 ? data.timestamps[i] : data.newestTimestamp;
+
+                    // the timestamps are in seconds, the consumer expects milliseconds
+                    if (consumer.filter(chunkX, chunkZ, timestamp * 1000L)) {
+                        MCAChunk chunk = world.getChunkLoader().load(data.data, data.offsets[i], length, Compression.NONE);
+                        consumer.accept(chunkX, chunkZ, chunk);
+                    }
+                }
+            }
+        } finally {
+            data.release();
+        }
+    }
 
-            if (version < 1 || version > 2)
-                throw new IOException("Linear region-file format: Unsupported version: " + version);
+    /**
+     * Keeps the decompressed data of this region loaded until the returned pin is closed, regardless of the
+     * limit of the shared cache
+     */
+    @Override
+    public Pin pin() {
+        synchronized (this) {
+            pinCount++;
+        }
 
-            if (fileLength != dataLength + 40) // 40 = header + footer
-                throw new IOException("Linear region-file format: Invalid file length. Expected " + (dataLength + 40) + " but got " + fileLength);
+        AtomicBoolean closed = new AtomicBoolean(false);
+        return () -> {
+            if (!closed.compareAndSet(false, true)) return;
 
-            compressedData = new byte[dataLength];
-            dIn.readFully(compressedData, 0, dataLength);
+            RegionData unpinned = null;
+            synchronized (this) {
+                if (--pinCount == 0) {
+                    unpinned = pinnedData;
+                    pinnedData = null;
+                }
+            }
+            if (unpinned != null) unpinned.release();
+        };
+    }
 
-            if (dIn.readLong() != MAGIC)
-                throw new IOException("Linear region-file format: invalid footer magic");
+    /**
+     * Drops the decompressed data of this region from the shared cache, it will be read again when this region is
+     * used again (unless it is pinned).
+     */
+    @Override
+    public void close() {
+        REGION_DATA_CACHE.invalidate(this);
+    }
 
+    /**
+     * Returns the decompressed data of this region, reading and decompressing the file if it has not been read yet
+     * or changed (size or last-modified time) since. Returns null if the file does not exist or is empty.<br>
+     * The returned data is retained and has to be {@link RegionData#release() released} after it has been used.
+     */
+    private @Nullable RegionData retainRegionData() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(regionFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            close();
+            return null;
         }
 
-        initialized = true;
-    }
+        RegionData data = pinnedData;
+        if (data != null && data.isValid(attributes) && data.retain()) return data;
 
-    @Override
-    public void iterateAllChunks(ChunkConsumer consumer) throws IOException {
-        if (!initialized) init();
-
-        int chunkStartX = regionPos.getX() * 32;
-        int chunkStartZ = regionPos.getY() * 32;
-
-        byte[] chunkDataBuffer = null;
-
-        try (
-                InputStream in = Compression.ZSTD.decompress(new ByteArrayInputStream(compressedData));
-                DataInputStream dIn = new DataInputStream(in)
-        ) {
-            int[] chunkDataLengths = new int[1024];
-            int[] chunkTimestamps = new int[1024];
-            for (int i = 0 ; i < 1024 ; i++) {
-                chunkDataLengths[i] = dIn.readInt();
-                chunkTimestamps[i] = dIn.readInt();
-            }
+        data = REGION_DATA_CACHE.getIfPresent(this);
+        if (data != null && data.isValid(attributes) && data.retain()) {
+            updatePinnedData(data);
+            return data;
+        }
 
-            int i = 0;
-            int toBeSkipped = 0;
-            for (int z = 0; z < 32; z++) {
-                for (int x = 0; x < 32; x++) {
-                    int length = chunkDataLengths[i];
-                    if (length > 0) {
-                        int chunkX = chunkStartX + x;
-                        int chunkZ = chunkStartZ + z;
-                        long timestamp = version == 2 ? chunkTimestamps[i] : newestTimestamp;
-
-                        if (consumer.filter(chunkX, chunkZ, timestamp)) {
-                            if (toBeSkipped > 0) skipNBytes(dIn, toBeSkipped);
-
-                            if (chunkDataBuffer == null || chunkDataBuffer.length < length)
-                                chunkDataBuffer = new byte[length];
-                            dIn.readFully(chunkDataBuffer, 0, length);
-
-                            MCAChunk chunk = world.getChunkLoader().load(chunkDataBuffer, 0, length, Compression.NONE);
-                            consumer.accept(chunkX, chunkZ, chunk);
-                        } else {
-                            // skip before reading the next chunk, but only if there is a next chunk
-                            // that we actually want to read, to avoid decompressing unnecessary data
-                            toBeSkipped += length;
-                        }
-                    }
+        synchronized (this) {
+            data = REGION_DATA_CACHE.getIfPresent(this);
+            if (data != null && data.isValid(attributes) && data.retain()) {
+                updatePinnedData(data);
+                return data;
+            }
 
-                    i++;
-                }
+            if (attributes.size() == 0) {
+                close();
+                return null;
             }
 
+            data = new RegionData(regionFile, attributes);
+            data.retain();
+            REGION_DATA_CACHE.put(this, data);
+            updatePinnedData(data);
+            return data;
+        }
+    }
+
+    private void updatePinnedData(RegionData data) {
+        RegionData unpinned;
+        synchronized (this) {
+            if (pinCount <= 0 || pinnedData == data || !data.retain()) return;
+            unpinned = pinnedData;
+            pinnedData = data;
         }
+        if (unpinned != null) unpinned.release();
+    }
+
+    /**
+     * Sets the amount of memory (in bytes) that the decompressed data of all linear regions may use in total,
+     * regions that are {@link #pin() pinned} are kept in addition to that.
+     */
+    public static void setDataCacheMemoryLimit(long bytes) {
+        dataCacheMemoryLimit = bytes;
+        REGION_DATA_CACHE.policy().eviction().ifPresent(eviction -> eviction.setMaximum(bytes));
     }
 
     public static String getRegionFileName(int regionX, int regionZ) {
@@ -194,26 +274,116 @@ public static String getRegionFileName(int regionX, int regionZ) {
     }
 
     /**
-     * This method is taken here from a newer version of {@link InputStream},
-     * to ensure Java 11 compatibility.
+     * The fully decompressed chunk-data of a linear region-file, with an index of where each chunk starts.<br>
+     * The data-array is reference-counted (the cache holds one reference), it is returned to a pool and reused for
+     * another region once the last reference is released.
      */
-    private static void skipNBytes(InputStream in, long n) throws IOException {
-        while (n > 0) {
-            long ns = in.skip(n);
-            if (ns > 0 && ns <= n) {
-                // adjust number to skip
-                n -= ns;
-            } else if (ns == 0) { // no bytes skipped
-                // read one byte to check for EOS
-                if (in.read() == -1) {
-                    throw new EOFException();
+    private static class RegionData {
+
+        private final long size;
+        private final FileTime lastModified;
+
+        private final byte version;
+        private final long newestTimestamp;
+
+        private final byte[] data;
+        private final int[] offsets = new int[1024];
+        private final int[] lengths = new int[1024];
+        private final int[] timestamps = new int[1024];
+
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        RegionData(Path regionFile, BasicFileAttributes attributes) throws IOException {
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime();
+
+            // the compressed data is only needed while decompressing, so it is read into the reused buffer of this thread
+            byte[] compressedData;
+            int compressedLength;
+            try (
+                    InputStream in = Files.newInputStream(regionFile, StandardOpenOption.READ);
+                    BufferedInputStream bIn = new BufferedInputStream(in);
+                    DataInputStream dIn = new DataInputStream(bIn)
+            ) {
+                if (dIn.readLong() != MAGIC)
+                    throw new IOException("Linear region-file format: invalid header magic");
+
+                // read the header
+                version = dIn.readByte();
+                newestTimestamp = dIn.readLong();
+                dIn.readByte(); // compression level
+                dIn.readShort(); // chunk count
+                compressedLength = dIn.readInt();
+                dIn.readLong(); // data hash
+
+                if (version < 1 || version > 2)
+                    throw new IOException("Linear region-file format: Unsupported version: " + version);
+
+                if (size != compressedLength + 40L) // 40 = header + footer
+                    throw new IOException("Linear region-file format: Invalid file length. Expected " + (compressedLength + 40L) + " but got " + size);
+
+                compressedData = DecompressionContext.get().getInput(compressedLength);
+                dIn.readFully(compressedData, 0, compressedLength);
+
+                if (dIn.readLong() != MAGIC)
+                    throw new IOException("Linear region-file format: invalid footer magic");
+            }
+
+            // decompress everything once, and index where each chunk starts
+            try (
+                    InputStream in = Compression.ZSTD.decompress(new ByteArrayInputStream(compressedData, 0, compressedLength));
+                    DataInputStream dIn = new DataInputStream(in)
+            ) {
+                long totalLength = 0;
+                for (int i = 0 ; i < 1024 ; i++) {
+                    lengths[i] = dIn.readInt();
+                    timestamps[i] = dIn.readInt();
+                    offsets[i] = (int) totalLength;
+                    if (lengths[i] > 0) totalLength += lengths[i];
                 }
-                // one byte read so decrement number to skip
-                n--;
-            } else { // skipped negative or too many bytes
-                throw new IOException("Unable to skip exactly");
+
+                if (totalLength > Integer.MAX_VALUE)
+                    throw new IOException("Linear region-file format: Region data is too large: " + totalLength);
+
+                byte[] data = acquireDataBuffer((int) totalLength);
+                try {
+                    dIn.readFully(data, 0, (int) totalLength);
+                } catch (IOException | RuntimeException ex) {
+                    DATA_BUFFER_POOL.offer(data);
+                    throw ex;
+                }
+                this.data = data;
             }
         }
+
+        boolean isValid(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified.equals(attributes.lastModifiedTime());
+        }
+
+        /**
+         * Adds a reference to this data, returns false if the data has already been fully released
+         * (and can no longer be used)
+         */
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count <= 0) return false;
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0)
+                DATA_BUFFER_POOL.offer(data);
+        }
+
+        private static byte[] acquireDataBuffer(int length) {
+            byte[] buffer = DATA_BUFFER_POOL.poll();
+            if (buffer != null && buffer.length >= length) return buffer;
+            return new byte[length];
+        }
+
     }
 
-}
\ No newline at end of file
+}
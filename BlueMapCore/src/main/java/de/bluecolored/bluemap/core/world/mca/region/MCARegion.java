@@ -25,22 +25,29 @@
 package de.bluecolored.bluemap.core.world.mca.region;
 
 import com.flowpowered.math.vector.Vector2i;
+import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.ChunkConsumer;
 import de.bluecolored.bluemap.core.world.Region;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.chunk.DecompressionContext;
 import de.bluecolored.bluemap.core.world.mca.chunk.MCAChunk;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 
 @Getter
 @ToString
@@ -52,6 +59,10 @@ public class MCARegion implements Region {
     private final Path regionFile;
     private final Vector2i regionPos;
 
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private volatile @Nullable RegionFile file;
+
     public MCARegion(MCAWorld world, Path regionFile) throws IllegalArgumentException {
         this.world = world;
         this.regionFile = regionFile;
@@ -71,88 +82,101 @@ public MCARegion(MCAWorld world, Vector2i regionPos) throws IllegalArgumentExcep
 
     @Override
     public Chunk loadChunk(int chunkX, int chunkZ) throws IOException {
-        if (Files.notExists(regionFile)) return Chunk.EMPTY_CHUNK;
-
-        long fileLength = Files.size(regionFile);
-        if (fileLength == 0) return Chunk.EMPTY_CHUNK;
-
-        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
-            int xzChunk = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
-
-            byte[] header = new byte[4];
-            channel.position(xzChunk * 4);
-            readFully(channel, header, 0, 4);
-
-            int offset = header[0] << 16;
-            offset |= (header[1] & 0xFF) << 8;
-            offset |= header[2] & 0xFF;
-            offset *= 4096;
-            int size = header[3] * 4096;
-
-            if (size == 0) return Chunk.EMPTY_CHUNK;
-
-            byte[] chunkDataBuffer = new byte[size];
-
-            channel.position(offset);
-            readFully(channel, chunkDataBuffer, 0, size);
-
-            return loadChunk(chunkDataBuffer, size);
+        RegionFile file = getFile();
+        if (file == null) return Chunk.EMPTY_CHUNK;
+
+        int xzChunk = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
+        DecompressionContext context = DecompressionContext.get();
+        int length;
+        try {
+            length = file.readChunkData(xzChunk, context);
+        } catch (ClosedChannelException ex) {
+            // the region has been closed while reading, re-open the file
+            file = getFile();
+            if (file == null) return Chunk.EMPTY_CHUNK;
+            length = file.readChunkData(xzChunk, context);
         }
+        if (length < 0) return Chunk.EMPTY_CHUNK;
+
+        return loadChunk(context.getInput(), length);
     }
 
     @Override
     public void iterateAllChunks(ChunkConsumer consumer) throws IOException {
-        if (Files.notExists(regionFile)) return;
-
-        long fileLength = Files.size(regionFile);
-        if (fileLength == 0) return;
+        RegionFile file = getFile();
+        if (file == null) return;
 
         int chunkStartX = regionPos.getX() * 32;
         int chunkStartZ = regionPos.getY() * 32;
 
-        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
-            byte[] header = new byte[1024 * 8];
-            byte[] chunkDataBuffer = null;
-
-            // read the header
-            readFully(channel, header, 0, header.length);
-
-            // iterate over all chunks
-            for (int x = 0; x < 32; x++) {
-                for (int z = 0; z < 32; z++) {
-                    int xzChunk = (z & 0b11111) << 5 | (x & 0b11111);
-
-                    int size = header[xzChunk * 4 + 3] * 4096;
-                    if (size == 0) continue;
+        DecompressionContext context = DecompressionContext.get();
+
+        // iterate over all chunks
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                int xzChunk = (z & 0b11111) << 5 | (x & 0b11111);
+                if (file.getSectorCount(xzChunk) == 0) continue;
+
+                int chunkX = chunkStartX + x;
+                int chunkZ = chunkStartZ + z;
+
+                // load chunk only if consumers filter returns true
+                if (consumer.filter(chunkX, chunkZ, file.getTimestamp(xzChunk) * 1000L)) {
+                    int length;
+                    try {
+                        length = file.readChunkData(xzChunk, context);
+                    } catch (ClosedChannelException ex) {
+                        // the region has been closed while iterating, re-open the file
+                        file = getFile();
+                        if (file == null) return;
+                        length = file.readChunkData(xzChunk, context);
+                    }
+                    if (length < 0) continue;
 
-                    int chunkX = chunkStartX + x;
-                    int chunkZ = chunkStartZ + z;
+                    MCAChunk chunk = loadChunk(context.getInput(), length);
+                    consumer.accept(chunkX, chunkZ, chunk);
+                }
+            }
+        }
+    }
 
-                    int i = xzChunk * 4 + 4096;
-                    int timestamp = header[i++] << 24;
-                    timestamp |= (header[i++] & 0xFF) << 16;
-                    timestamp |= (header[i++] & 0xFF) << 8;
-                    timestamp |= header[i] & 0xFF;
+    /**
+     * Closes the region-file, it will be re-opened when this region is used again.
+     */
+    @Override
+    public void close() {
+        RegionFile file;
+        synchronized (this) {
+            file = this.file;
+            this.file = null;
+        }
+        if (file != null) file.close();
+    }
 
-                    // load chunk only if consumers filter returns true
-                    if (consumer.filter(chunkX, chunkZ, timestamp * 1000L)) {
-                        i = xzChunk * 4;
-                        int offset = header[i++] << 16;
-                        offset |= (header[i++] & 0xFF) << 8;
-                        offset |= header[i] & 0xFF;
-                        offset *= 4096;
+    /**
+     * Returns the currently opened region-file, (re-)opening the file if it changed (size or last-modified time)
+     * since it has been opened. Returns null if the file does not exist or is empty.
+     */
+    private @Nullable RegionFile getFile() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(regionFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            close();
+            return null;
+        }
 
-                        if (chunkDataBuffer == null || chunkDataBuffer.length < size)
-                            chunkDataBuffer = new byte[size];
+        RegionFile file = this.file;
+        if (file != null && file.isValid(attributes)) return file;
 
-                        channel.position(offset);
-                        readFully(channel, chunkDataBuffer, 0, size);
+        synchronized (this) {
+            file = this.file;
+            if (file != null && file.isValid(attributes)) return file;
+            if (file != null) file.close();
 
-                        MCAChunk chunk = loadChunk(chunkDataBuffer, size);
-                        consumer.accept(chunkX, chunkZ, chunk);
-                    }
-                }
-            }
+            file = attributes.size() > 0 ? new RegionFile(regionFile, attributes) : null;
+            this.file = file;
+            return file;
         }
     }
 
@@ -175,25 +199,104 @@ public static String getRegionFileName(int regionX, int regionZ) {
         return "r." + regionX + "." + regionZ + FILE_SUFFIX;
     }
 
-    @SuppressWarnings("SameParameterValue")
-    private static void readFully(ReadableByteChannel src, byte[] dst, int off, int len) throws IOException {
-        readFully(src, ByteBuffer.wrap(dst), off, len);
-    }
+    /**
+     * An opened region-file together with its parsed header (chunk-locations and -timestamps).<br>
+     * The chunks are read with positional reads from a single {@link FileChannel} that is kept open while the region
+     * is cached.<br>
+     * The region-files are owned (and written) by the server while we read them, which is why they are deliberately
+     * not memory-mapped: mappings can only be released by the garbage-collector, which would keep the server (or any
+     * other tool) from deleting or truncating the files on Windows, and on Linux, reading from a mapping of a file that
+     * got truncated faults with an {@link InternalError} instead of an {@link IOException}.<br>
+     * An open channel has none of these problems, a file that has been truncated while we read it only yields less
+     * (zeroed) data.
+     */
+    private static class RegionFile {
+
+        private static final int SECTOR_SIZE = 4096;
+        private static final int HEADER_SIZE = SECTOR_SIZE * 2;
+
+        private final Path regionFile;
+        private final long size;
+        private final FileTime lastModified;
+        private final FileChannel channel;
+        private final int[] header = new int[1024 * 2];
+
+        RegionFile(Path regionFile, BasicFileAttributes attributes) throws IOException {
+            this.regionFile = regionFile;
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime();
+            this.channel = FileChannel.open(regionFile, StandardOpenOption.READ);
+
+            try {
+                // a (corrupted) file that is too short for the full header is handled like the missing data is 0
+                ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+                read(headerBuffer, 0);
+                headerBuffer.rewind().asIntBuffer().get(header);
+            } catch (IOException ex) {
+                close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Tests if the channel is still open (e.g. it is closed if a reading thread got interrupted) and the file
+         * did not change since it has been opened
+         */
+        boolean isValid(BasicFileAttributes attributes) {
+            return channel.isOpen() && size == attributes.size() && lastModified.equals(attributes.lastModifiedTime());
+        }
 
-    private static void readFully(ReadableByteChannel src, ByteBuffer bb, int off, int len) throws IOException {
-        int limit = off + len;
-        if (limit > bb.capacity()) throw new IllegalArgumentException("buffer too small");
+        int getSectorCount(int xzChunk) {
+            return header[xzChunk] & 0xFF;
+        }
+
+        int getTimestamp(int xzChunk) {
+            return header[1024 + xzChunk];
+        }
+
+        /**
+         * Reads the data of the chunk (starting with the 4-byte length and the compression-type) from the file
+         * into the {@link DecompressionContext#getInput(int) input-buffer} of the context and returns its length,
+         * or returns -1 if the chunk does not exist.
+         */
+        int readChunkData(int xzChunk, DecompressionContext context) throws IOException {
+            int location = header[xzChunk];
+            int sectorCount = location & 0xFF;
+            if (sectorCount == 0) return -1;
+
+            long offset = (long) (location >>> 8) * SECTOR_SIZE;
+            int length = sectorCount * SECTOR_SIZE;
+
+            // read all sectors at once, data that is missing at the end of the file is treated as zeros
+            byte[] data = context.getInput(length);
+            read(ByteBuffer.wrap(data, 0, length), offset);
+
+            // only return the actual chunk-data, not the padding of the last sector
+            int dataLength = ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | (data[3] & 0xFF)) + 4;
+            if (dataLength > 4 && dataLength < length) length = dataLength;
+            return length;
+        }
 
-        bb.limit(limit);
-        bb.position(off);
+        /**
+         * Fills the buffer with the data starting at the given position in the file, and zeros where the file ends
+         */
+        private void read(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) break;
+                position += read;
+            }
+            while (buffer.hasRemaining()) buffer.put((byte) 0);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                Logger.global.logDebug("Failed to close region-file '" + regionFile + "': " + ex);
+            }
+        }
 
-        do {
-            int read = src.read(bb);
-            if (read < 0)
-                // zero out all the remaining data from the buffer
-                while (bb.remaining() > 0)
-                    bb.put((byte) 0);
-        } while (bb.remaining() > 0);
     }
 
 }
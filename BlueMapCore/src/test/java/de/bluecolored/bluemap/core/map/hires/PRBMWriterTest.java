@@ -0,0 +1,240 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PRBMWriterTest {
+
+    @Test
+    public void testCompactRoundTrip() throws IOException {
+        TileModel model = createTestModel(0f);
+        PRBM prbm = PRBM.read(write(model));
+
+        assertEquals(2, prbm.version);
+        assertTrue(prbm.attributes.containsKey("octNormal"));
+        assertModelEquals(model, prbm, 0.5f / PRBMWriter.COMPACT_POSITION_SCALE, 0.5f / PRBMWriter.COMPACT_UV_SCALE);
+    }
+
+    @Test
+    public void testFloatFallbackRoundTrip() throws IOException {
+        // positions out of the range of the compact format
+        TileModel model = createTestModel(1000f);
+        PRBM prbm = PRBM.read(write(model));
+
+        assertEquals(1, prbm.version);
+        assertTrue(prbm.attributes.containsKey("normal"));
+        assertModelEquals(model, prbm, 0f, 0f);
+    }
+
+    @Test
+    public void testWeldsSharedVertices() throws IOException {
+        TileModel model = createTestModel(0f);
+        PRBM prbm = PRBM.read(write(model));
+
+        // the two triangles of each quad share two vertices
+        assertEquals(model.size() * 3, prbm.indexCount);
+        assertEquals(model.size() * 2, prbm.vertexCount);
+    }
+
+    @Test
+    public void testMaterialGroups() throws IOException {
+        TileModel model = createTestModel(0f);
+        PRBM prbm = PRBM.read(write(model));
+
+        // material, start, count for each group (start and count in indices), terminated by -1
+        int[] expected = {
+                0, 0, 2 * 3,
+                5, 2 * 3, 4 * 3,
+                -1
+        };
+        assertEquals(expected.length, prbm.materialGroups.length);
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(expected[i], prbm.materialGroups[i], "material-group value " + i);
+    }
+
+    private static byte[] write(TileModel model) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PRBMWriter writer = new PRBMWriter(out)) {
+            writer.write(model);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates a model of three quads (6 faces) with distinct attributes, the first quad uses material 0,
+     * the others material 5
+     */
+    private static TileModel createTestModel(float offset) {
+        TileModel model = new TileModel(2);
+        for (int q = 0; q < 3; q++) {
+            float x = offset + q * 1.25f, y = -64.5f + q, z = offset - q * 3.015625f;
+            int face = model.add(2);
+
+            model.setPositions(face,     x, y, z, x + 1, y, z, x + 1, y, z + 1);
+            model.setPositions(face + 1, x, y, z, x + 1, y, z + 1, x, y, z + 1);
+            model.setUvs(face,     0f, 0f, 1f, 0f, 1f, 1f);
+            model.setUvs(face + 1, 0f, 0f, 1f, 1f, 0.3f + q, 2.5f);
+
+            for (int f = face; f < face + 2; f++) {
+                model.setColor(f, 1f, 0.5f, q / 4f);
+                model.setAOs(f, 1f, 0.75f, 0.5f);
+                model.setSunlight(f, 15 - q);
+                model.setBlocklight(f, q);
+                model.setMaterialIndex(f, q == 0 ? 0 : 5);
+            }
+
+            // the shared vertices need the same ao
+            model.setAOs(face + 1, 1f, 0.5f, 0.25f);
+        }
+        return model;
+    }
+
+    private static void assertModelEquals(TileModel model, PRBM prbm, float positionDelta, float uvDelta) {
+        for (int face = 0; face < model.size(); face++) {
+            for (int j = 0; j < 3; j++) {
+                int vertex = prbm.indices[face * 3 + j];
+                String at = "face " + face + ", vertex " + j;
+
+                for (int k = 0; k < 3; k++)
+                    assertEquals(model.position[face * TileModel.FI_POSITION + j * 3 + k], prbm.get("position", vertex, k), positionDelta, at);
+                for (int k = 0; k < 2; k++)
+                    assertEquals(model.uv[face * TileModel.FI_UV + j * 2 + k], prbm.get("uv", vertex, k), uvDelta, at);
+                for (int k = 0; k < 3; k++)
+                    assertEquals((int) (model.color[face * TileModel.FI_COLOR + k] * 255), (int) prbm.get("color", vertex, k), at);
+
+                assertEquals((int) (model.ao[face * TileModel.FI_AO + j] * 255), (int) prbm.get("ao", vertex, 0), at);
+                assertEquals(model.sunlight[face], (int) prbm.get("sunlight", vertex, 0), at);
+                assertEquals(model.blocklight[face], (int) prbm.get("blocklight", vertex, 0), at);
+            }
+        }
+    }
+
+    /**
+     * A minimal reader for the prbm-format, the values of the attributes are returned as they are stored
+     * (with the scale of the compact format applied)
+     */
+    private static class PRBM {
+
+        int version, vertexCount, indexCount;
+        final Map<String, Attribute> attributes = new HashMap<>();
+        int[] indices;
+        int[] materialGroups;
+
+        static PRBM read(byte[] data) {
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            PRBM prbm = new PRBM();
+
+            prbm.version = buffer.get() & 0xFF;
+            int header = buffer.get() & 0xFF;
+            prbm.vertexCount = (buffer.getShort() & 0xFFFF) | (buffer.get() & 0xFF) << 16;
+            prbm.indexCount = (buffer.getShort() & 0xFFFF) | (buffer.get() & 0xFF) << 16;
+            assertEquals(7, header & 0x1F);
+
+            for (int a = 0; a < 7; a++) {
+                StringBuilder name = new StringBuilder();
+                for (byte b = buffer.get(); b != 0; b = buffer.get()) name.append((char) b);
+
+                Attribute attribute = new Attribute(buffer, buffer.get() & 0xFF, prbm.version);
+                align(buffer);
+                attribute.offset = buffer.position();
+                buffer.position(attribute.offset + prbm.vertexCount * attribute.cardinality * attribute.valueSize);
+                prbm.attributes.put(name.toString(), attribute);
+            }
+
+            align(buffer);
+            boolean largeIndices = (header & (1 << 6)) != 0;
+            prbm.indices = new int[prbm.indexCount];
+            for (int i = 0; i < prbm.indexCount; i++)
+                prbm.indices[i] = largeIndices ? buffer.getInt() : buffer.getShort() & 0xFFFF;
+
+            align(buffer);
+            prbm.materialGroups = new int[buffer.remaining() / 4];
+            for (int i = 0; i < prbm.materialGroups.length; i++)
+                prbm.materialGroups[i] = buffer.getInt();
+
+            return prbm;
+        }
+
+        float get(String attributeName, int vertex, int component) {
+            return attributes.get(attributeName).get(vertex, component);
+        }
+
+        private static void align(ByteBuffer buffer) {
+            buffer.position((buffer.position() + 3) & ~3);
+        }
+
+    }
+
+    private static class Attribute {
+
+        final ByteBuffer buffer;
+        final int cardinality, encoding, valueSize;
+        final float scale;
+        int offset;
+
+        Attribute(ByteBuffer buffer, int type, int version) {
+            this.buffer = buffer;
+            this.cardinality = ((type >> 4) & 0x3) + 1;
+            this.encoding = type & 0xF;
+
+            switch (encoding) {
+                case 1: valueSize = 4; break; // float
+                case 3: case 7: valueSize = 1; break; // (u)int8
+                case 4: case 8: valueSize = 2; break; // (u)int16
+                default: throw new IllegalArgumentException("Unexpected encoding: " + encoding);
+            }
+
+            // the compact format stores positions as signed and uvs as unsigned 16bit fixed-point values
+            if (version == 2 && encoding == 4) scale = 1f / PRBMWriter.COMPACT_POSITION_SCALE;
+            else if (version == 2 && encoding == 8) scale = 1f / PRBMWriter.COMPACT_UV_SCALE;
+            else scale = 1f;
+        }
+
+        float get(int vertex, int component) {
+            int index = offset + (vertex * cardinality + component) * valueSize;
+            switch (encoding) {
+                case 1: return buffer.getFloat(index);
+                case 3: return buffer.get(index);
+                case 7: return buffer.get(index) & 0xFF;
+                case 4: return buffer.getShort(index) * scale;
+                case 8: return (buffer.getShort(index) & 0xFFFF) * scale;
+                default: throw new IllegalStateException();
+            }
+        }
+
+    }
+
+}
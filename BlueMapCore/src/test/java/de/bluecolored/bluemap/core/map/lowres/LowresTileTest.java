@@ -0,0 +1,133 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.lowres;
+
+import com.flowpowered.math.vector.Vector2i;
+import de.bluecolored.bluemap.core.util.math.Color;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class LowresTileTest {
+
+    private static final Vector2i TILE_SIZE = new Vector2i(50, 40);
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        LowresTile tile = createTestTile(0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tile.saveBinary(out);
+        assertFalse(tile.isDirty());
+
+        LowresTile loaded = new LowresTile(TILE_SIZE, new ByteArrayInputStream(out.toByteArray()));
+        assertTilesEqual(tile, loaded);
+        assertEquals(-1, loaded.getHeight(3, 4));
+        assertEquals(15, loaded.getBlockLight(3, 4));
+        assertEquals(-2048, loaded.getHeight(TILE_SIZE.getX(), TILE_SIZE.getY()));
+    }
+
+    @Test
+    public void testBinaryRoundTripEmptyTile() throws IOException {
+        LowresTile tile = new LowresTile(TILE_SIZE);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tile.saveBinary(out);
+
+        LowresTile loaded = new LowresTile(TILE_SIZE, new ByteArrayInputStream(out.toByteArray()));
+        assertTilesEqual(tile, loaded);
+    }
+
+    @Test
+    public void testPNGRoundTrip() throws IOException {
+        LowresTile tile = createTestTile(1);
+
+        for (int compressionLevel : new int[]{ 0, 6 }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            tile.save(out, compressionLevel);
+            assertFalse(tile.isDirty());
+
+            LowresTile loaded = new LowresTile(TILE_SIZE, new ByteArrayInputStream(out.toByteArray()));
+            assertTilesEqual(tile, loaded);
+        }
+    }
+
+    /**
+     * Creates a tile with random colors (including transparency), block-lights and heights (including negative
+     * and extreme heights)
+     */
+    static LowresTile createTestTile(long seed) {
+        Random random = new Random(seed);
+        LowresTile tile = new LowresTile(TILE_SIZE);
+        int sizeX = TILE_SIZE.getX() + 1, sizeZ = TILE_SIZE.getY() + 1;
+
+        int[] colors = new int[sizeX * sizeZ];
+        int[] heightsAndLights = new int[sizeX * sizeZ];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt();
+
+            int height;
+            switch (i % 7) {
+                case 0: height = -64 - random.nextInt(2000); break;
+                case 1: height = -32767; break;
+                case 2: height = 32767; break;
+                default: height = random.nextInt(640) - 64;
+            }
+            heightsAndLights[i] = LowresTile.packHeightAndLight(height, random.nextInt(16));
+        }
+        tile.set(0, 0, sizeX, sizeZ, colors, heightsAndLights, 0, sizeX);
+
+        // single pixel writes
+        Color color = new Color();
+        tile.set(3, 4, color.set(0x80FF2040), -1, 15);
+        tile.set(sizeX - 1, sizeZ - 1, color.set(0x00000000), -2048, 0);
+
+        return tile;
+    }
+
+    static void assertTilesEqual(LowresTile expected, LowresTile actual) {
+        Color expectedColor = new Color(), actualColor = new Color();
+        for (int x = 0; x <= TILE_SIZE.getX(); x++) {
+            for (int z = 0; z <= TILE_SIZE.getY(); z++) {
+                expected.getColor(x, z, expectedColor);
+                actual.getColor(x, z, actualColor);
+                assertEquals(expectedColor.r, actualColor.r, "red at " + x + "," + z);
+                assertEquals(expectedColor.g, actualColor.g, "green at " + x + "," + z);
+                assertEquals(expectedColor.b, actualColor.b, "blue at " + x + "," + z);
+                assertEquals(expectedColor.a, actualColor.a, "alpha at " + x + "," + z);
+
+                assertEquals(expected.getHeight(x, z), actual.getHeight(x, z), "height at " + x + "," + z);
+                assertEquals(expected.getBlockLight(x, z), actual.getBlockLight(x, z), "block-light at " + x + "," + z);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class PNGEncoderTest {
+
+    @Test
+    public void testRoundTripAllFilters() throws IOException {
+        int[] argb = createTestImage(37, 23, 0);
+
+        for (PNGEncoder.RowFilter filter : PNGEncoder.RowFilter.values()) {
+            for (int compressionLevel : new int[]{ 0, 1, 9 }) {
+                assertArrayEquals(argb, roundTrip(new PNGEncoder(compressionLevel), argb, 37, 23, row -> filter),
+                        "filter " + filter + ", compression-level " + compressionLevel);
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTripMixedFilters() throws IOException {
+        int[] argb = createTestImage(64, 64, 1);
+        PNGEncoder.RowFilter[] filters = PNGEncoder.RowFilter.values();
+        assertArrayEquals(argb, roundTrip(new PNGEncoder(), argb, 64, 64, row -> filters[row % filters.length]));
+    }
+
+    @Test
+    public void testRoundTripLargeImage() throws IOException {
+        // bigger than one IDAT-chunk, even if not compressed
+        int[] argb = createTestImage(300, 200, 2);
+        assertArrayEquals(argb, roundTrip(new PNGEncoder(0), argb, 300, 200, row -> PNGEncoder.RowFilter.NONE));
+        assertArrayEquals(argb, roundTrip(new PNGEncoder(), argb, 300, 200, row -> PNGEncoder.RowFilter.ADAPTIVE));
+    }
+
+    @Test
+    public void testEncoderReuse() throws IOException {
+        PNGEncoder encoder = new PNGEncoder();
+        int[] big = createTestImage(80, 80, 3);
+        int[] small = createTestImage(5, 3, 4);
+        assertArrayEquals(big, roundTrip(encoder, big, 80, 80, row -> PNGEncoder.RowFilter.PAETH));
+        assertArrayEquals(small, roundTrip(encoder, small, 5, 3, row -> PNGEncoder.RowFilter.PAETH));
+    }
+
+    private static int[] roundTrip(PNGEncoder encoder, int[] argb, int width, int height, PNGEncoder.RowFilterSelector filters) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.write(argb, width, height, filters, out);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertNotNull(image);
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
+    /**
+     * Random pixels mixed with smooth gradients, so all filters have something to do
+     */
+    private static int[] createTestImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                argb[y * width + x] = (y % 3 == 0) ?
+                        random.nextInt() :
+                        0xFF000000 | (x * 7 & 0xFF) << 16 | (y * 5 & 0xFF) << 8 | ((x + y) & 0xFF);
+            }
+        }
+        return argb;
+    }
+
+}
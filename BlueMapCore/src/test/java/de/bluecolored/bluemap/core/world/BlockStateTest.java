@@ -31,6 +31,8 @@
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BlockStateTest {
@@ -87,6 +89,19 @@ public void testFromString() {
         assertEquals("testVal2", blockState.getProperties().get("testProp2"));
     }
 
+    @Test
+    public void testIntern() {
+        BlockState blockState = new BlockState("someblock", mapOf("testProp", "testVal", "testProp2", "testVal2"));
+        BlockState interned = blockState.intern();
+        assertSame(interned, new BlockState("minecraft:someblock", mapOf("testProp2", "testVal2", "testProp", "testVal")).intern());
+        assertEquals(interned.getId(), blockState.getId());
+        assertSame(interned, BlockState.byId(interned.getId()));
+
+        BlockState other = new BlockState("someblock", mapOf("testProp", "otherVal"));
+        assertNotEquals(interned.getId(), other.getId());
+        assertNotEquals(interned, other);
+    }
+
     private <L, V> Map<L, V> mapOf(L key, V value) {
         Map<L, V> map = new HashMap<>();
         map.put(key, value);